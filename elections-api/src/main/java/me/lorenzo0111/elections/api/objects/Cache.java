@@ -24,6 +24,7 @@
 
 package me.lorenzo0111.elections.api.objects;
 
+import java.util.Collection;
 import java.util.Map;
 
 public interface Cache<K, V extends ICacheEntry> {
@@ -36,4 +37,22 @@ public interface Cache<K, V extends ICacheEntry> {
     Map<K, V> map();
     int persist();
     V findByName(String name);
+    void addIndex(CacheIndex<K, V> index);
+
+    /**
+     * Bring the cache in line with a freshly loaded generation without recording deletes.
+     * Unchanged entries keep their instance and local changes that still have to be written win over the loaded ones.
+     * @param entries Every entry loaded from the database
+     * @return Number of entries added, replaced or dropped
+     */
+    int load(Map<K, V> entries);
+
+    /**
+     * Apply the entries changed in the database since the last sync without recording writes or deletes.
+     * Local changes that still have to be written win over the fetched ones.
+     * @param changed Entries added or updated in the database
+     * @param removed Keys removed from the database
+     * @return Number of entries added, replaced or dropped
+     */
+    int merge(Map<K, V> changed, Collection<K> removed);
 }
@@ -26,4 +26,10 @@ package me.lorenzo0111.elections.api.objects;
 
 public interface CacheEventHandler {
     void onCacheReloaded();
+
+    /**
+     * Called on the main thread after changes made by other servers have been merged into the cache
+     */
+    default void onCacheSynced() {
+    }
 }
\ No newline at end of file
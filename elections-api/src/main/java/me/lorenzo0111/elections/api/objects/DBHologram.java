@@ -41,6 +41,7 @@ import com.google.gson.Gson;
 
 import me.lorenzo0111.elections.constants.Getters;
 import me.lorenzo0111.elections.database.EDatabaseSerializable;
+import me.lorenzo0111.elections.database.UUIDs;
 import me.lorenzo0111.elections.database.Version;
 
 public class DBHologram implements EDatabaseSerializable, ICacheEntry {
@@ -111,7 +112,7 @@ public class DBHologram implements EDatabaseSerializable, ICacheEntry {
     }
 
     public static DBHologram fromResultSet(ResultSet result) throws SQLException {
-        UUID id = UUID.fromString(result.getString("id"));
+        UUID id = UUIDs.read(result, "id");
         String name = result.getString("name");
         String location = result.getString("location");
         Type type = new TypeToken<List<String>>() {}.getType();
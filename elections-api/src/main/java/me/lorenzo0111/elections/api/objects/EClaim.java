@@ -35,6 +35,7 @@ import org.jetbrains.annotations.NotNull;
 
 import me.lorenzo0111.elections.constants.Getters;
 import me.lorenzo0111.elections.database.EDatabaseSerializable;
+import me.lorenzo0111.elections.database.UUIDs;
 import me.lorenzo0111.elections.database.Version;
 import me.ryanhamshire.GriefPrevention.Claim;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
@@ -76,10 +77,10 @@ public class EClaim implements EDatabaseSerializable, ICacheEntry {
     }
 
     public static EClaim fromResultSet(ResultSet resultSet) throws SQLException {
-        UUID id = UUID.fromString(resultSet.getString("id"));
+        UUID id = UUIDs.read(resultSet, "id");
         String name = resultSet.getString("name");
 
-        Long gpid = Long.parseLong(resultSet.getString("gpid"));
+        Long gpid = resultSet.getLong("gpid");
         UUID owner = null;
         String ownerString = resultSet.getString("owner");
         if (!ownerString.equals("admin")) {
@@ -105,7 +106,7 @@ public class EClaim implements EDatabaseSerializable, ICacheEntry {
 
         map.put("id", id.toString());
         map.put("name", name);
-        map.put("gpid", claim.getID().toString());
+        map.put("gpid", claim.getID());
         if (owner == null) {
             map.put("owner", "admin");
         } else {
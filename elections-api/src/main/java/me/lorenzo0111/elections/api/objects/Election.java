@@ -29,6 +29,7 @@ import com.google.common.reflect.TypeToken;
 
 import me.lorenzo0111.elections.constants.Getters;
 import me.lorenzo0111.elections.database.EDatabaseSerializable;
+import me.lorenzo0111.elections.database.UUIDs;
 import me.lorenzo0111.elections.database.Version;
 
 import org.jetbrains.annotations.NotNull;
@@ -110,7 +111,7 @@ public class Election implements EDatabaseSerializable, ICacheEntry {
     }
 
     public static Election fromResultSet(ResultSet result) throws SQLException {
-        UUID id = UUID.fromString(result.getString("id"));
+        UUID id = UUIDs.read(result, "id");
         String name = result.getString("name");
 
         Type type = new TypeToken<List<UUID>>() {}.getType();
@@ -30,6 +30,7 @@ import com.google.gson.Gson;
 
 import me.lorenzo0111.elections.constants.Getters;
 import me.lorenzo0111.elections.database.EDatabaseSerializable;
+import me.lorenzo0111.elections.database.UUIDs;
 import me.lorenzo0111.elections.database.Version;
 
 import com.google.common.reflect.TypeToken;
@@ -66,8 +67,8 @@ public class ElectionBlock implements EDatabaseSerializable, ICacheEntry {
     }
 
     public static ElectionBlock fromResultSet(ResultSet result) throws SQLException {
-        UUID id = UUID.fromString(result.getString("id"));
-        UUID world = UUID.fromString(result.getString("world"));
+        UUID id = UUIDs.read(result, "id");
+        UUID world = UUIDs.read(result, "world");
         Type type = new TypeToken<HashMap<String, Object>>() {}.getType();
         Map<String, Object> location = new Gson().fromJson(result.getString("location"), type);
         String blockData = result.getString("blockdata");
@@ -104,6 +105,22 @@ public class ElectionBlock implements EDatabaseSerializable, ICacheEntry {
         return blockData;
     }
 
+    public int getX() {
+        return this.coordinate("x");
+    }
+
+    public int getY() {
+        return this.coordinate("y");
+    }
+
+    public int getZ() {
+        return this.coordinate("z");
+    }
+
+    private int coordinate(String axis) {
+        return (int) Math.floor(((Number) location.get(axis)).doubleValue());
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == this) {
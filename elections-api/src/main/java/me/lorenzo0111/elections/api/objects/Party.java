@@ -29,6 +29,7 @@ import com.google.gson.Gson;
 
 import me.lorenzo0111.elections.constants.Getters;
 import me.lorenzo0111.elections.database.EDatabaseSerializable;
+import me.lorenzo0111.elections.database.UUIDs;
 import me.lorenzo0111.elections.database.Version;
 
 import org.jetbrains.annotations.NotNull;
@@ -110,9 +111,9 @@ public class Party implements EDatabaseSerializable, ICacheEntry {
     }
 
     public static Party fromResultSet(ResultSet resultSet) throws SQLException {
-        UUID id = UUID.fromString(resultSet.getString("id"));
+        UUID id = UUIDs.read(resultSet, "id");
         String name = resultSet.getString("name");
-        UUID owner = UUID.fromString(resultSet.getString("owner"));
+        UUID owner = UUIDs.read(resultSet, "owner");
         String icon = resultSet.getString("icon");
 
         Type type = new TypeToken<ArrayList<UUID>>() {}.getType();
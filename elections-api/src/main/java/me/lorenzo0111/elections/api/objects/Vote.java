@@ -26,6 +26,7 @@ package me.lorenzo0111.elections.api.objects;
 
 import me.lorenzo0111.elections.constants.Getters;
 import me.lorenzo0111.elections.database.EDatabaseSerializable;
+import me.lorenzo0111.elections.database.UUIDs;
 import me.lorenzo0111.elections.database.Version;
 
 import org.jetbrains.annotations.NotNull;
@@ -74,10 +75,10 @@ public class Vote implements EDatabaseSerializable, ICacheEntry {
     }
 
     public static Vote fromResultSet(ResultSet results) throws SQLException {
-        UUID voteId = UUID.fromString(results.getString("id"));
-        UUID player = UUID.fromString(results.getString("player"));
-        UUID party = UUID.fromString(results.getString("party"));
-        UUID electionId = UUID.fromString(results.getString("electionId"));
+        UUID voteId = UUIDs.read(results, "id");
+        UUID player = UUIDs.read(results, "player");
+        UUID party = UUIDs.read(results, "party");
+        UUID electionId = UUIDs.read(results, "electionId");
 
         return new Vote(voteId, player, party, electionId, false);
     }
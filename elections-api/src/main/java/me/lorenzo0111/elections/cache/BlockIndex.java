@@ -0,0 +1,263 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.lorenzo0111.elections.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Index of values by block position, for lookups on hot event paths.
+ * Every world keeps an open addressing table keyed by the packed position of the block,
+ * so a miss costs a single probe and no allocation. Values are also bucketed by chunk.
+ * Not thread-safe, meant to be used from the main thread.
+ */
+public class BlockIndex<V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<UUID, WorldBlocks<V>> worlds = new HashMap<>();
+    private int size;
+
+    /**
+     * Pack a block position in a long: 26 bits for x and z, 12 bits for y
+     */
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    /**
+     * @return Key of the chunk that contains a block
+     */
+    public static long chunk(int x, int z) {
+        return ((long) (x >> 4) << 32) | ((z >> 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param world Id of the world
+     * @return true if there is a value at this position
+     */
+    public boolean contains(UUID world, int x, int y, int z) {
+        return this.get(world, x, y, z) != null;
+    }
+
+    /**
+     * @param world Id of the world
+     * @return The value at this position, or null if there is none
+     */
+    public V get(UUID world, int x, int y, int z) {
+        if (size == 0) {
+            return null;
+        }
+
+        WorldBlocks<V> blocks = worlds.get(world);
+        return blocks == null ? null : blocks.get(pack(x, y, z));
+    }
+
+    /**
+     * @param world Id of the world
+     * @return The value that was at this position, or null if there was none
+     */
+    public V put(UUID world, int x, int y, int z, V value) {
+        V previous = worlds.computeIfAbsent(world, id -> new WorldBlocks<>()).put(pack(x, y, z), value);
+
+        Map<Long, List<V>> chunks = worlds.get(world).chunks;
+        long chunk = chunk(x, z);
+        if (previous != null) {
+            chunks.get(chunk).remove(previous);
+        } else {
+            size++;
+        }
+
+        chunks.computeIfAbsent(chunk, key -> new ArrayList<>()).add(value);
+        return previous;
+    }
+
+    /**
+     * @param world Id of the world
+     * @return The value that was at this position, or null if there was none
+     */
+    public V remove(UUID world, int x, int y, int z) {
+        WorldBlocks<V> blocks = worlds.get(world);
+        if (blocks == null) {
+            return null;
+        }
+
+        V previous = blocks.remove(pack(x, y, z));
+        if (previous == null) {
+            return null;
+        }
+
+        long chunk = chunk(x, z);
+        List<V> values = blocks.chunks.get(chunk);
+        values.remove(previous);
+        if (values.isEmpty()) {
+            blocks.chunks.remove(chunk);
+        }
+
+        if (blocks.size == 0) {
+            worlds.remove(world);
+        }
+
+        size--;
+        return previous;
+    }
+
+    /**
+     * @param world Id of the world
+     * @param chunkX X of the chunk
+     * @param chunkZ Z of the chunk
+     * @return A read-only view of the values in the chunk
+     */
+    public Collection<V> inChunk(UUID world, int chunkX, int chunkZ) {
+        WorldBlocks<V> blocks = worlds.get(world);
+        if (blocks == null) {
+            return Collections.emptyList();
+        }
+
+        List<V> values = blocks.chunks.get(chunk(chunkX << 4, chunkZ << 4));
+        return values == null ? Collections.emptyList() : Collections.unmodifiableList(values);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        worlds.clear();
+        size = 0;
+    }
+
+    private static class WorldBlocks<V> {
+        // a slot is empty when its value is null
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private Object[] values = new Object[INITIAL_CAPACITY];
+        private int size;
+        private final Map<Long, List<V>> chunks = new HashMap<>();
+
+        @SuppressWarnings("unchecked")
+        private V get(long key) {
+            int mask = keys.length - 1;
+
+            for (int slot = hash(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return (V) values[slot];
+                }
+            }
+
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V put(long key, V value) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                this.resize(keys.length * 2);
+            }
+
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            for (; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    V previous = (V) values[slot];
+                    values[slot] = value;
+                    return previous;
+                }
+            }
+
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V remove(long key) {
+            int mask = keys.length - 1;
+
+            for (int slot = hash(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    V previous = (V) values[slot];
+                    this.shift(slot);
+                    size--;
+                    return previous;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Empty a slot, moving back the following ones that would no longer be reachable
+         */
+        private void shift(int slot) {
+            int mask = keys.length - 1;
+            values[slot] = null;
+
+            for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                int home = hash(keys[next]) & mask;
+
+                boolean reachable = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+                if (!reachable) {
+                    keys[slot] = keys[next];
+                    values[slot] = values[next];
+                    values[next] = null;
+                    slot = next;
+                }
+            }
+        }
+
+        private void resize(int length) {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+
+            keys = new long[length];
+            values = new Object[length];
+
+            int mask = length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] == null) {
+                    continue;
+                }
+
+                int slot = hash(oldKeys[i]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+
+        private static int hash(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
@@ -24,7 +24,13 @@
 
 package me.lorenzo0111.elections.cache;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
 import me.lorenzo0111.elections.api.objects.Cache;
@@ -33,14 +39,15 @@ import me.lorenzo0111.elections.api.objects.DBHologram;
 import me.lorenzo0111.elections.api.objects.EClaim;
 import me.lorenzo0111.elections.api.objects.Election;
 import me.lorenzo0111.elections.api.objects.Party;
-import me.lorenzo0111.elections.api.objects.Vote;
 import me.lorenzo0111.elections.api.objects.ElectionBlock;
+import me.lorenzo0111.elections.api.objects.Vote;
+import me.lorenzo0111.elections.database.Changes;
 
 public class CacheManager {
     private final CacheEventHandler eventHandler;
     private final Cache<UUID, Party> parties;
     private final Cache<UUID, Election> elections;
-    private final Cache<UUID, Vote> votes;
+    private final VoteCache votes;
     private final Cache<UUID, EClaim> claims;
     private final Cache<UUID, DBHologram> holograms;
     private final Cache<UUID, ElectionBlock> blocks;
@@ -49,7 +56,7 @@ public class CacheManager {
         this.eventHandler = eventHandler;
         this.parties = new MapCache<>();
         this.elections = new MapCache<>();
-        this.votes = new MapCache<>();
+        this.votes = new VoteCache();
         this.claims = new MapCache<>();
         this.holograms = new MapCache<>();
         this.blocks = new MapCache<>();
@@ -63,10 +70,22 @@ public class CacheManager {
         return elections;
     }
 
-    public Cache<UUID, Vote> getVotes() {
+    public VoteCache getVotes() {
         return votes;
     }
 
+    public VoteTally getTally() {
+        return votes.getTally();
+    }
+
+    public boolean verifyTally() {
+        return votes.verifyTally();
+    }
+
+    public boolean verifyStore() {
+        return votes.verifyStore();
+    }
+
     public Cache<UUID, EClaim> getClaims() {
         return claims;
     }
@@ -83,6 +102,45 @@ public class CacheManager {
         return eventHandler;
     }
 
+    /**
+     * Merge the rows changed in the database into every cache
+     * @param changes Changes fetched from the database
+     * @return Number of entries added, replaced or dropped
+     */
+    public int merge(Changes changes) {
+        int nChanges = 0;
+
+        nChanges += votes.merge(byId(changes.getVotes(), Vote::getId), changes.getRemoved("votes"));
+        nChanges += parties.merge(byId(changes.getParties(), Party::getId), changes.getRemoved("parties"));
+        nChanges += elections.merge(byId(changes.getElections(), Election::getId), changes.getRemoved("elections"));
+        nChanges += blocks.merge(byId(changes.getBlocks(), ElectionBlock::getId), changes.getRemoved("blocks"));
+        nChanges += holograms.merge(byId(changes.getHolograms(), DBHologram::getId), changes.getRemoved("holograms"));
+        nChanges += claims.merge(byId(changes.getClaims(), EClaim::getId), changes.getRemoved("claims"));
+
+        return nChanges;
+    }
+
+    private static <V> Map<UUID, V> byId(Collection<V> values, Function<V, UUID> key) {
+        Map<UUID, V> map = new HashMap<>();
+        values.forEach(value -> map.put(key.apply(value), value));
+        return map;
+    }
+
+    /**
+     * Drop the votes of the closed elections from the cache, their results stay in the tally
+     * @return Number of votes dropped
+     */
+    public int evictClosed() {
+        List<UUID> closed = new ArrayList<>();
+        for (Election election : elections.map().values()) {
+            if (!election.isOpen()) {
+                closed.add(election.getId());
+            }
+        }
+
+        return votes.evict(closed);
+    }
+
     public int persist() {
         int nMutations = 0;
 
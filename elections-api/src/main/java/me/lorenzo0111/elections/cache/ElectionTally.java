@@ -0,0 +1,164 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Vote counters of a single election, with its parties kept sorted by votes
+ */
+public class ElectionTally {
+    private final UUID electionId;
+    private final AtomicInteger totalVotes = new AtomicInteger(0);
+    private final Map<UUID, AtomicInteger> partyVotes = new ConcurrentHashMap<>();
+    // parties by votes, highest first, parties with the same votes keep the order they reached them in
+    private final List<UUID> ranking = new ArrayList<>();
+    private final Map<UUID, Integer> positions = new HashMap<>();
+
+    public ElectionTally(UUID electionId) {
+        this.electionId = electionId;
+    }
+
+    public UUID getElectionId() {
+        return electionId;
+    }
+
+    public int getTotalVotes() {
+        return totalVotes.get();
+    }
+
+    public int getVotes(UUID partyId) {
+        AtomicInteger count = partyVotes.get(partyId);
+        if (count == null) {
+            return 0;
+        }
+
+        return count.get();
+    }
+
+    /**
+     * @return A read-only copy of the vote count of every party that received at least one vote
+     */
+    public Map<UUID, Integer> getPartyVotes() {
+        Map<UUID, Integer> votes = new HashMap<>();
+
+        for (Map.Entry<UUID, AtomicInteger> entry : partyVotes.entrySet()) {
+            int n = entry.getValue().get();
+            if (n > 0) {
+                votes.put(entry.getKey(), n);
+            }
+        }
+
+        return Collections.unmodifiableMap(votes);
+    }
+
+    /**
+     * @param rank Position in the standings, starting from 1
+     * @return The party at that position, or null if fewer parties received a vote
+     */
+    public synchronized UUID getParty(int rank) {
+        if (rank < 1 || rank > ranking.size()) {
+            return null;
+        }
+
+        UUID partyId = ranking.get(rank - 1);
+        return this.getVotes(partyId) > 0 ? partyId : null;
+    }
+
+    /**
+     * @return The party with the most votes, or null if there are no votes
+     */
+    public UUID getLeader() {
+        return this.getParty(1);
+    }
+
+    synchronized void increment(UUID partyId) {
+        partyVotes.computeIfAbsent(partyId, id -> new AtomicInteger(0)).incrementAndGet();
+        totalVotes.incrementAndGet();
+        this.rank(partyId);
+    }
+
+    synchronized void set(UUID partyId, int count) {
+        AtomicInteger previous = partyVotes.put(partyId, new AtomicInteger(count));
+        totalVotes.addAndGet(count - (previous == null ? 0 : previous.get()));
+        this.rank(partyId);
+    }
+
+    synchronized void decrement(UUID partyId) {
+        AtomicInteger count = partyVotes.get(partyId);
+        if (count == null) {
+            return;
+        }
+
+        count.decrementAndGet();
+        totalVotes.decrementAndGet();
+        this.rank(partyId);
+    }
+
+    /**
+     * Move a party whose votes changed to its place in the standings
+     */
+    private void rank(UUID partyId) {
+        Integer position = positions.get(partyId);
+        if (position == null) {
+            position = ranking.size();
+            ranking.add(partyId);
+        }
+
+        int votes = this.getVotes(partyId);
+        int i = position;
+
+        while (i > 0 && this.getVotes(ranking.get(i - 1)) < votes) {
+            this.move(i - 1, i);
+            i--;
+        }
+
+        while (i < ranking.size() - 1 && this.getVotes(ranking.get(i + 1)) > votes) {
+            this.move(i + 1, i);
+            i++;
+        }
+
+        ranking.set(i, partyId);
+        positions.put(partyId, i);
+    }
+
+    private void move(int from, int to) {
+        UUID partyId = ranking.get(from);
+        ranking.set(to, partyId);
+        positions.put(partyId, to);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("election %s totalVotes %d partyVotes %s", electionId, getTotalVotes(), getPartyVotes());
+    }
+}
@@ -25,16 +25,50 @@
 package me.lorenzo0111.elections.cache;
 
 import me.lorenzo0111.elections.api.objects.Cache;
+import me.lorenzo0111.elections.api.objects.CacheIndex;
 import me.lorenzo0111.elections.api.objects.ICacheEntry;
+import me.lorenzo0111.elections.constants.Getters;
+import me.lorenzo0111.elections.database.EDatabaseSerializable;
 import me.lorenzo0111.elections.database.Version;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class MapCache<K, V extends ICacheEntry> implements Cache<K, V> {
-    private final Map<K, V> cache = new ConcurrentHashMap<>();
+    private final Map<K, V> cache;
     private final Map<K, V> delete = new ConcurrentHashMap<>();
+    private final Set<K> dirty = ConcurrentHashMap.newKeySet();
+    private final Set<K> inflight = ConcurrentHashMap.newKeySet();
+    private final List<CacheIndex<K, V>> indexes = new CopyOnWriteArrayList<>();
+    private final NameIndex<K, V> names;
+
+    public MapCache() {
+        this(false);
+    }
+
+    /**
+     * @param ignoreCase true if {@link #findByName(String)} should ignore the case of names
+     */
+    public MapCache(boolean ignoreCase) {
+        this(ignoreCase, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * @param ignoreCase true if {@link #findByName(String)} should ignore the case of names
+     * @param store Thread-safe map that holds the entries
+     */
+    protected MapCache(boolean ignoreCase, Map<K, V> store) {
+        this.cache = store;
+        this.names = new NameIndex<>(ignoreCase);
+        this.indexes.add(names);
+    }
 
     @Override
     public int size() {
@@ -45,13 +79,30 @@ public class MapCache<K, V extends ICacheEntry> implements Cache<K, V> {
     public void reset() {
         for (K key : cache.keySet()) {
             V value = cache.remove(key);
-            delete.put(key, value);
+            if (value != null) {
+                delete.put(key, value);
+                removed(key, value);
+            }
         }
     }
 
     @Override
     public void add(K key, V value) {
-        cache.put(key, value);
+        V previous = cache.put(key, value);
+        if (previous != null && previous != value) {
+            previous.version().setListener(null);
+        }
+
+        Version version = value.version();
+        version.setListener(() -> {
+            dirty.add(key);
+            indexes.forEach(index -> index.changed(key, value));
+        });
+        if (version.isDirty()) {
+            dirty.add(key);
+        }
+
+        added(key, previous, value);
     }
 
     @Override
@@ -59,6 +110,7 @@ public class MapCache<K, V extends ICacheEntry> implements Cache<K, V> {
         boolean removed = cache.remove(key, value);
         if (removed) {
             delete.put(key, value);
+            removed(key, value);
         }
 
         return removed;
@@ -71,6 +123,7 @@ public class MapCache<K, V extends ICacheEntry> implements Cache<K, V> {
         value = cache.remove(key);
         if (value != null) {
             delete.put(key, value);
+            removed(key, value);
         }
 
         return value;
@@ -90,41 +143,215 @@ public class MapCache<K, V extends ICacheEntry> implements Cache<K, V> {
     public int persist() {
         int nMutations = 0;
 
+        List<V> deletes = new ArrayList<>();
         for (K key : Set.copyOf(delete.keySet())) {
-            V value = delete.get(key);
-            value.delete();
-            delete.remove(key);
+            if (inflight.contains(key)) {
+                // wait for the pending update, otherwise it could land after the delete
+                continue;
+            }
+
+            V value = delete.remove(key);
+            if (value == null) {
+                continue;
+            }
+
+            deletes.add(value);
             nMutations++;
         }
 
-        for (V value : cache.values()) {
+        if (!deletes.isEmpty()) {
+            deleteAll(deletes);
+        }
+
+        Map<K, V> updates = new HashMap<>();
+        Map<K, Integer> versions = new HashMap<>();
+        for (K key : Set.copyOf(dirty)) {
+            if (!inflight.add(key)) {
+                // still being written: stays in the dirty set and is picked up once the write completes
+                continue;
+            }
+
+            dirty.remove(key);
+
+            V value = cache.get(key);
+            if (value == null) {
+                inflight.remove(key);
+                continue;
+            }
+
             Version version = value.version();
             Integer currentVersion = version.getVersion();
             Integer lastVersion = version.getLast();
 
-            if (currentVersion > lastVersion) {
-                nMutations++;
-                value.update()
-                    .thenAccept((success) -> {
-                        if (success) {
-                            value.version().setLast(currentVersion);
-                        }
-                    });
+            if (currentVersion <= lastVersion) {
+                inflight.remove(key);
+                continue;
             }
+
+            updates.put(key, value);
+            versions.put(key, currentVersion);
+            nMutations++;
+        }
+
+        if (!updates.isEmpty()) {
+            updateAll(updates.values())
+                .whenComplete((success, error) -> updates.forEach((key, value) -> {
+                    Version version = value.version();
+                    if (error == null && success) {
+                        version.setLast(versions.get(key));
+                        this.written(key, value);
+                    }
+
+                    inflight.remove(key);
+
+                    if (version.isDirty() && cache.get(key) == value) {
+                        dirty.add(key);
+                    }
+                }));
         }
 
         return nMutations;
     }
 
+    /**
+     * Called once an entry has been written to the database
+     */
+    protected void written(K key, V value) {
+    }
+
+    private CompletableFuture<Boolean> updateAll(Collection<V> values) {
+        List<EDatabaseSerializable> batch = new ArrayList<>();
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+        for (V value : values) {
+            if (value instanceof EDatabaseSerializable) {
+                batch.add((EDatabaseSerializable) value);
+            } else {
+                futures.add(value.update());
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            futures.add(Getters.database().updateAll(batch));
+        }
+
+        return all(futures);
+    }
+
+    private void deleteAll(Collection<V> values) {
+        List<EDatabaseSerializable> batch = new ArrayList<>();
+
+        for (V value : values) {
+            if (value instanceof EDatabaseSerializable) {
+                batch.add((EDatabaseSerializable) value);
+            } else {
+                value.delete();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            Getters.database().deleteAll(batch);
+        }
+    }
+
+    private static CompletableFuture<Boolean> all(List<CompletableFuture<Boolean>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .thenApply(ignored -> futures.stream().allMatch(CompletableFuture::join));
+    }
+
     @Override
     public V findByName(String name) {
-        for(V value : cache.values()) {
-            String vname = value.getName();
-            if (vname != null && vname.equals(name)) {
-                return value;
+        return names.find(name);
+    }
+
+    @Override
+    public void addIndex(CacheIndex<K, V> index) {
+        indexes.add(index);
+        cache.forEach(index::add);
+    }
+
+    @Override
+    public int load(Map<K, V> entries) {
+        List<K> gone = new ArrayList<>();
+        for (K key : cache.keySet()) {
+            if (!entries.containsKey(key)) {
+                gone.add(key);
+            }
+        }
+
+        return this.merge(entries, gone);
+    }
+
+    @Override
+    public int merge(Map<K, V> changed, Collection<K> removed) {
+        int changes = 0;
+
+        for (K key : removed) {
+            if (changed.containsKey(key) || pending(key)) {
+                continue;
+            }
+
+            // gone from the database: drop it without recording a delete
+            V value = cache.remove(key);
+            if (value != null) {
+                removed(key, value);
+                changes++;
+            }
+        }
+
+        for (Map.Entry<K, V> entry : changed.entrySet()) {
+            K key = entry.getKey();
+            V value = entry.getValue();
+
+            if (delete.containsKey(key) || pending(key)) {
+                continue;
+            }
+
+            V current = cache.get(key);
+            if (current != null && same(current, value)) {
+                continue;
+            }
+
+            add(key, value);
+            changes++;
+        }
+
+        return changes;
+    }
+
+    private boolean pending(K key) {
+        if (dirty.contains(key) || inflight.contains(key)) {
+            return true;
+        }
+
+        V current = cache.get(key);
+        return current != null && current.version().isDirty();
+    }
+
+    private boolean same(V current, V loaded) {
+        if (current.equals(loaded)) {
+            return true;
+        }
+
+        return current instanceof EDatabaseSerializable && loaded instanceof EDatabaseSerializable
+            && ((EDatabaseSerializable) current).serialize().equals(((EDatabaseSerializable) loaded).serialize());
+    }
+
+    private void added(K key, V previous, V value) {
+        for (CacheIndex<K, V> index : indexes) {
+            if (previous != null) {
+                index.remove(key, previous);
             }
+            index.add(key, value);
         }
+    }
 
-        return null;
+    private void removed(K key, V value) {
+        value.version().setListener(null);
+        dirty.remove(key);
+
+        for (CacheIndex<K, V> index : indexes) {
+            index.remove(key, value);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.cache;
+
+import me.lorenzo0111.elections.api.objects.CacheIndex;
+import me.lorenzo0111.elections.api.objects.ICacheEntry;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unique index on {@link ICacheEntry#getName()}
+ */
+public class NameIndex<K, V extends ICacheEntry> implements CacheIndex<K, V> {
+    private final Map<String, V> names = new ConcurrentHashMap<>();
+    private final boolean ignoreCase;
+
+    /**
+     * @param ignoreCase true to match names regardless of their case
+     */
+    public NameIndex(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    public V find(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        return names.get(key(name));
+    }
+
+    @Override
+    public void add(K key, V value) {
+        String name = value.getName();
+        if (name != null) {
+            names.put(key(name), value);
+        }
+    }
+
+    @Override
+    public void remove(K key, V value) {
+        String name = value.getName();
+        if (name != null) {
+            names.remove(key(name), value);
+        }
+    }
+
+    @Override
+    public void clear() {
+        names.clear();
+    }
+
+    private String key(String name) {
+        return ignoreCase ? name.toLowerCase(Locale.ROOT) : name;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.lorenzo0111.elections.cache;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gives every player a small ordinal, in the order they are first seen.
+ * Ordinals never change while the plugin runs, so they can be used as bit positions.
+ */
+public class PlayerOrdinals {
+    private final Map<UUID, Integer> ordinals = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param playerId Id of the player
+     * @return The ordinal of the player, assigned if it didn't have one
+     */
+    public int ordinal(UUID playerId) {
+        return ordinals.computeIfAbsent(playerId, id -> next.getAndIncrement());
+    }
+
+    /**
+     * @param playerId Id of the player
+     * @return The ordinal of the player, or -1 if it doesn't have one
+     */
+    public int find(UUID playerId) {
+        Integer ordinal = ordinals.get(playerId);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    public int size() {
+        return ordinals.size();
+    }
+}
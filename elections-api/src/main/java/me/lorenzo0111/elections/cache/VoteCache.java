@@ -0,0 +1,490 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.cache;
+
+import me.lorenzo0111.elections.api.objects.Vote;
+import me.lorenzo0111.elections.constants.Getters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiPredicate;
+
+/**
+ * Vote cache that keeps its votes in a {@link VoteStore} and a {@link VoteTally} in sync with them.
+ * Only the votes of open elections stay in the cache, closed elections keep a summary in the tally
+ * and their votes are loaded from the database when they are asked for.
+ */
+public class VoteCache extends MapCache<UUID, Vote> {
+    private final VoteStore store;
+    private final VoteTally tally = new VoteTally();
+    private final PlayerOrdinals ordinals = new PlayerOrdinals();
+    private final VoterBitmaps voters = new VoterBitmaps(ordinals);
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final Map<UUID, History> history = new ConcurrentHashMap<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile int historyElections = 4;
+    private volatile long historyMillis = TimeUnit.MINUTES.toMillis(10);
+    private VoteJournal journal;
+
+    public VoteCache() {
+        this(new VoteStore());
+    }
+
+    private VoteCache(VoteStore store) {
+        super(false, store);
+        this.store = store;
+        this.addIndex(tally);
+        this.addIndex(voters);
+    }
+
+    /**
+     * Record every new or removed vote in a journal before it reaches the database
+     * @param journal Journal to append to, or null to disable it
+     */
+    public void setJournal(VoteJournal journal) {
+        this.journal = journal;
+    }
+
+    public VoteJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * @param listener Called when the summaries of the closed elections change or their votes are loaded
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param elections Number of closed elections whose votes are kept after being loaded
+     * @param millis Time after which the unused votes of a closed election are dropped
+     */
+    public void setHistoryLimits(int elections, long millis) {
+        this.historyElections = Math.max(1, elections);
+        this.historyMillis = millis;
+    }
+
+    /**
+     * Load a new generation of votes and the summaries of the closed elections
+     * @param generation Votes of the open elections
+     * @param summaries Vote count of every party by closed election, or null to keep the current summaries
+     * @return Number of votes added, replaced or dropped
+     */
+    public int load(Map<UUID, Vote> generation, Map<UUID, Map<UUID, Integer>> summaries) {
+        store.reserve(generation.size());
+        int changes = this.load(generation);
+
+        if (summaries != null) {
+            tally.summarize(summaries);
+            voters.dropFrozen();
+            history.clear();
+            listeners.forEach(Runnable::run);
+        }
+
+        return changes;
+    }
+
+    @Override
+    public int merge(Map<UUID, Vote> changed, Collection<UUID> removed) {
+        Map<UUID, Vote> resident = new HashMap<>();
+        Set<UUID> closed = new HashSet<>();
+
+        changed.forEach((key, vote) -> {
+            if (tally.isSummarized(vote.getElectionId())) {
+                closed.add(vote.getElectionId());
+            } else {
+                resident.put(key, vote);
+            }
+        });
+
+        if (!closed.isEmpty()) {
+            this.refresh(closed);
+        }
+
+        return super.merge(resident, removed);
+    }
+
+    /**
+     * Drop the votes of closed elections from the cache, keeping their counters as a summary.
+     * Votes that still have to be written stay until they are.
+     * @param closed Ids of the closed elections
+     * @return Number of votes dropped
+     */
+    public int evict(Collection<UUID> closed) {
+        int evicted = 0;
+
+        // summarized elections only come back while their last votes wait to be written
+        List<UUID> victims = new ArrayList<>();
+        for (UUID electionId : closed) {
+            if (!tally.isSummarized(electionId) || store.count(electionId) > 0) {
+                victims.add(electionId);
+            }
+        }
+
+        if (!victims.isEmpty()) {
+            List<UUID> keys = store.keys(victims);
+
+            for (UUID electionId : victims) {
+                tally.freeze(electionId);
+                voters.freeze(electionId);
+            }
+
+            if (!keys.isEmpty()) {
+                evicted = super.merge(Collections.emptyMap(), keys);
+            }
+        }
+
+        this.expireHistory();
+        return evicted;
+    }
+
+    /**
+     * Votes of a closed election, loaded from the database on first use and dropped once unused
+     * @param electionId Id of the election
+     * @return A completable future with the votes of the election by player
+     */
+    public CompletableFuture<Map<UUID, Vote>> history(UUID electionId) {
+        History entry = history.get(electionId);
+
+        if (entry == null) {
+            History created = new History();
+            entry = history.putIfAbsent(electionId, created);
+
+            if (entry == null) {
+                entry = created;
+
+                // attached once the entry is in the map, the load can complete right away
+                Getters.database().getVotes(electionId).whenComplete((votes, error) -> {
+                    Map<UUID, Vote> players = new HashMap<>();
+                    if (votes == null) {
+                        // retried on the next request
+                        history.remove(electionId, created);
+                    } else {
+                        votes.forEach(vote -> players.put(vote.getPlayer(), vote));
+                        voters.freeze(electionId, players.keySet());
+                        listeners.forEach(Runnable::run);
+                    }
+                    created.votes.complete(players);
+                });
+            }
+        }
+
+        entry.used = System.currentTimeMillis();
+        this.expireHistory();
+
+        return entry.votes;
+    }
+
+    /**
+     * Drop the votes of closed elections that have not been used recently
+     */
+    public void expireHistory() {
+        long now = System.currentTimeMillis();
+        history.values().removeIf(entry -> now - entry.used > historyMillis);
+
+        while (history.size() > historyElections) {
+            history.entrySet().stream()
+                .min(Comparator.comparingLong(entry -> entry.getValue().used))
+                .ifPresent(entry -> history.remove(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * Read the summaries of some closed elections again from the database
+     */
+    private void refresh(Collection<UUID> electionIds) {
+        history.keySet().removeAll(electionIds);
+        voters.drop(electionIds);
+
+        Getters.database().getTallies(electionIds).thenAccept(summaries -> {
+            if (summaries == null) {
+                return;
+            }
+
+            for (UUID electionId : electionIds) {
+                tally.summarize(electionId, summaries.getOrDefault(electionId, Collections.emptyMap()));
+            }
+
+            listeners.forEach(Runnable::run);
+        });
+    }
+
+    @Override
+    protected void written(UUID key, Vote value) {
+        store.settle(key, value);
+    }
+
+    @Override
+    public void add(UUID key, Vote value) {
+        super.add(key, value);
+
+        // loaded votes are clean, only the ones that still have to be written are journaled
+        if (journal != null && value.version().isDirty()) {
+            journal.added(value);
+        }
+    }
+
+    @Override
+    public boolean remove(UUID key, Vote value) {
+        boolean removed = super.remove(key, value);
+        if (removed && journal != null) {
+            journal.removed(value);
+        }
+
+        return removed;
+    }
+
+    @Override
+    public Vote remove(UUID key) {
+        Vote value = super.remove(key);
+        if (value != null && journal != null) {
+            journal.removed(value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Apply the journaled changes that may not have reached the database yet
+     * @param sync Runs a task on the thread that owns the cache, where the changes are applied
+     * @return A completable future with the number of changes applied to the cache, completed by that thread
+     */
+    public CompletableFuture<Integer> replay(Executor sync) {
+        if (journal == null) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        // the snapshot completes on the journal writer thread
+        return journal.snapshot().thenApplyAsync(snapshot -> {
+            int applied = 0;
+            List<Vote> closedUpdates = new ArrayList<>();
+            List<Vote> closedDeletes = new ArrayList<>();
+
+            for (VoteJournal.Entry entry : snapshot.getEntries()) {
+                Vote vote = entry.getVote();
+
+                if (tally.isSummarized(vote.getElectionId())) {
+                    // not in the cache, write it again in case it never reached the database
+                    (entry.isRemoved() ? closedDeletes : closedUpdates).add(vote);
+                    applied++;
+                } else if (entry.isRemoved()) {
+                    if (super.remove(vote.getId()) != null) {
+                        applied++;
+                    }
+                } else if (get(vote.getId()) == null) {
+                    super.add(vote.getId(), vote);
+                    applied++;
+                }
+            }
+
+            if (!closedUpdates.isEmpty() || !closedDeletes.isEmpty()) {
+                Set<UUID> closed = new HashSet<>();
+                closedUpdates.forEach(vote -> closed.add(vote.getElectionId()));
+                closedDeletes.forEach(vote -> closed.add(vote.getElectionId()));
+
+                Getters.database().updateAll(closedUpdates)
+                    .thenCombine(Getters.database().deleteAll(closedDeletes), (a, b) -> a && b)
+                    .thenRun(() -> this.refresh(closed));
+            }
+
+            return applied;
+        }, sync);
+    }
+
+    /**
+     * Write the journaled votes to the database, then drop them from the journal.
+     * The votes are written as they are in the cache now, so a vote removed since it was journaled is deleted.
+     */
+    public void compact() {
+        if (journal == null || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+
+        journal.snapshot()
+            .thenCompose(snapshot -> {
+                if (snapshot.getEntries().isEmpty()) {
+                    return CompletableFuture.completedFuture(null);
+                }
+
+                Map<UUID, Vote> journaled = new LinkedHashMap<>();
+                snapshot.getEntries().forEach(entry -> journaled.put(entry.getVote().getId(), entry.getVote()));
+
+                List<Vote> updates = new ArrayList<>();
+                List<Vote> deletes = new ArrayList<>();
+                for (Vote vote : journaled.values()) {
+                    Vote current = get(vote.getId());
+                    if (current != null) {
+                        updates.add(current);
+                    } else if (!tally.isSummarized(vote.getElectionId())) {
+                        deletes.add(vote);
+                    }
+                    // votes of closed elections were written before they left the cache
+                }
+
+                CompletableFuture<Boolean> updated = Getters.database().updateAll(updates);
+                CompletableFuture<Boolean> deleted = Getters.database().deleteAll(deletes);
+
+                return updated.thenCombine(deleted, (a, b) -> a && b)
+                    .thenCompose(success -> success ? journal.truncate(snapshot.getEnd()) : CompletableFuture.completedFuture(null));
+            })
+            .whenComplete((result, error) -> {
+                if (error != null) {
+                    error.printStackTrace();
+                }
+
+                compacting.set(false);
+            });
+    }
+
+    /**
+     * Find the votes in the cache whose election and party match, without building the others
+     * @param filter Tested with the id of the election and the id of the party
+     * @return The matching votes
+     */
+    public List<Vote> votesWhere(BiPredicate<UUID, UUID> filter) {
+        return store.votesWhere(filter);
+    }
+
+    public VoteTally getTally() {
+        return tally;
+    }
+
+    public VoteStore getStore() {
+        return store;
+    }
+
+    /**
+     * Find the vote of a player in an election
+     * @param electionId Id of the election
+     * @param playerId Id of the player
+     * @return The vote, or null if the player didn't vote in that election
+     */
+    public Vote findVote(UUID electionId, UUID playerId) {
+        Vote vote = store.find(electionId, playerId);
+        if (vote != null || !tally.isSummarized(electionId)) {
+            return vote;
+        }
+
+        // closed election: answered once its votes are loaded
+        Map<UUID, Vote> votes = this.history(electionId).getNow(null);
+        return votes == null ? null : votes.get(playerId);
+    }
+
+    /**
+     * Check if a player voted in an election without building their vote
+     * @param electionId Id of the election
+     * @param playerId Id of the player
+     * @return true if the player voted in that election
+     */
+    public boolean hasVoted(UUID electionId, UUID playerId) {
+        if (!tally.isSummarized(electionId) || voters.contains(electionId)) {
+            return voters.hasVoted(electionId, playerId);
+        }
+
+        // closed election: answered once its votes are loaded
+        return this.findVote(electionId, playerId) != null;
+    }
+
+    /**
+     * @param electionId Id of the election
+     * @return Number of players that voted in the election
+     */
+    public int getTurnout(UUID electionId) {
+        if (tally.isSummarized(electionId)) {
+            // every player has a single vote per election
+            ElectionTally summary = tally.get(electionId);
+            return summary == null ? 0 : summary.getTotalVotes();
+        }
+
+        return voters.turnout(electionId);
+    }
+
+    /**
+     * @param electionIds Ids of the elections
+     * @return Number of players that voted in every one of the elections, 0 until the votes of the closed ones are loaded
+     */
+    public int getTurnout(Collection<UUID> electionIds) {
+        for (UUID electionId : electionIds) {
+            if (tally.isSummarized(electionId) && !voters.contains(electionId)) {
+                this.history(electionId);
+            }
+        }
+
+        return voters.turnout(electionIds);
+    }
+
+    public PlayerOrdinals getOrdinals() {
+        return ordinals;
+    }
+
+    /**
+     * Check the indexes of the vote store against its columns and rebuild them if they drifted
+     * @return true if the indexes were already consistent
+     */
+    public boolean verifyStore() {
+        if (store.verify()) {
+            return true;
+        }
+
+        store.reindex();
+        return false;
+    }
+
+    /**
+     * Check the tally against a full scan of the cache and rebuild it if it drifted
+     * @return true if the tally was already consistent
+     */
+    public boolean verifyTally() {
+        Map<UUID, Map<UUID, Integer>> counts = store.counts();
+        if (tally.verify(counts)) {
+            return true;
+        }
+
+        tally.rebuild(counts);
+        return false;
+    }
+
+    private static class History {
+        private final CompletableFuture<Map<UUID, Vote>> votes = new CompletableFuture<>();
+        // set before the entry is visible, so expireHistory() never sees an unused one
+        private volatile long used = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.cache;
+
+import me.lorenzo0111.elections.api.objects.Vote;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of vote additions and removals.
+ * Records are written by a dedicated thread that forces every batch of pending records to disk at once (group commit),
+ * so a vote is durable as soon as its append completes, long before it reaches the database.
+ */
+public class VoteJournal {
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final int PAYLOAD_SIZE = 1 + 16 * 4;
+    private static final int RECORD_SIZE = PAYLOAD_SIZE + 4;
+
+    private final Logger logger;
+    private final Path path;
+    private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private FileChannel channel;
+    private volatile boolean closed;
+
+    public VoteJournal(Logger logger, Path path) throws IOException {
+        this.logger = logger;
+        this.path = path;
+        this.channel = this.open();
+
+        long valid = this.read(channel).getEnd();
+        if (valid < channel.size()) {
+            logger.warning(String.format("VoteJournal: dropping %d bytes of a torn record", channel.size() - valid));
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+
+        this.writer = new Thread(this::loop, "ElectionsPlus Vote Journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Record the addition of a vote
+     * @param vote Vote that has been added
+     * @return A completable future completed once the record is on disk
+     */
+    public CompletableFuture<Void> added(Vote vote) {
+        return this.append(ADD, vote);
+    }
+
+    /**
+     * Record the removal of a vote
+     * @param vote Vote that has been removed
+     * @return A completable future completed once the record is on disk
+     */
+    public CompletableFuture<Void> removed(Vote vote) {
+        return this.append(REMOVE, vote);
+    }
+
+    /**
+     * Read every record written so far
+     * @return A completable future with the records and the position they end at
+     */
+    public CompletableFuture<Snapshot> snapshot() {
+        CompletableFuture<Snapshot> future = new CompletableFuture<>();
+
+        this.control(future, () -> {
+            try {
+                future.complete(this.read(channel));
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Drop every record before a position, the records appended after it are kept
+     * @param end Position returned by {@link Snapshot#getEnd()}
+     * @return A completable future completed once the journal has been rewritten
+     */
+    public CompletableFuture<Void> truncate(long end) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        this.control(future, () -> {
+            try {
+                long size = channel.size();
+
+                if (end >= size) {
+                    channel.truncate(0);
+                    channel.position(0);
+                    channel.force(true);
+                } else {
+                    ByteBuffer tail = ByteBuffer.allocate((int) (size - end));
+                    readFully(channel, tail, end);
+                    tail.flip();
+
+                    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+                    try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                        while (tail.hasRemaining()) {
+                            out.write(tail);
+                        }
+                        out.force(true);
+                    }
+
+                    channel.close();
+                    try {
+                        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } finally {
+                        // if the move failed the old journal is still complete, keep appending to it
+                        channel = this.open();
+                        channel.position(channel.size());
+                    }
+                }
+
+                future.complete(null);
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Write the pending records and close the journal
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        this.control(null, () -> closed = true);
+
+        try {
+            writer.join(10000);
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private CompletableFuture<Void> append(byte op, Vote vote) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(op);
+        putUUID(record, vote.getId());
+        putUUID(record, vote.getPlayer());
+        putUUID(record, vote.getParty());
+        putUUID(record, vote.getElectionId());
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, PAYLOAD_SIZE);
+        record.putInt((int) crc.getValue());
+        record.flip();
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IOException("The vote journal is closed"));
+            return future;
+        }
+
+        queue.add(new Task(record, null, future));
+        return future;
+    }
+
+    private void control(CompletableFuture<?> future, Runnable runnable) {
+        queue.add(new Task(null, runnable, future));
+    }
+
+    private void loop() {
+        List<Task> batch = new ArrayList<>();
+        List<Task> writes = new ArrayList<>();
+
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch);
+
+            for (Task task : batch) {
+                if (task.record != null) {
+                    writes.add(task);
+                    continue;
+                }
+
+                this.commit(writes);
+                try {
+                    task.control.run();
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, "VoteJournal: a task failed on " + path, e);
+                    if (task.future != null) {
+                        task.future.completeExceptionally(e);
+                    }
+                }
+            }
+
+            this.commit(writes);
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Task> writes) {
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer[] buffers = new ByteBuffer[writes.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = writes.get(i).record;
+        }
+
+        try {
+            long remaining = (long) buffers.length * RECORD_SIZE;
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            channel.force(false);
+
+            writes.forEach(task -> task.future.complete(null));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "VoteJournal: unable to write to " + path, e);
+            writes.forEach(task -> task.future.completeExceptionally(e));
+        }
+
+        writes.clear();
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private Snapshot read(FileChannel channel) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        CRC32 crc = new CRC32();
+        long position = 0;
+
+        while (true) {
+            record.clear();
+            if (!readFully(channel, record, position)) {
+                break;
+            }
+
+            crc.reset();
+            crc.update(record.array(), 0, PAYLOAD_SIZE);
+            record.flip();
+
+            byte op = record.get();
+            UUID id = getUUID(record);
+            UUID player = getUUID(record);
+            UUID party = getUUID(record);
+            UUID election = getUUID(record);
+
+            if ((op != ADD && op != REMOVE) || record.getInt() != (int) crc.getValue()) {
+                break;
+            }
+
+            entries.add(new Entry(op == REMOVE, new Vote(id, player, party, election, true)));
+            position += RECORD_SIZE;
+        }
+
+        return new Snapshot(entries, position);
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) <= 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static void putUUID(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUUID(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static class Task {
+        private final ByteBuffer record;
+        private final Runnable control;
+        private final CompletableFuture<?> future;
+
+        private Task(ByteBuffer record, Runnable control, CompletableFuture<?> future) {
+            this.record = record;
+            this.control = control;
+            this.future = future;
+        }
+    }
+
+    /**
+     * A vote addition or removal read back from the journal
+     */
+    public static class Entry {
+        private final boolean removed;
+        private final Vote vote;
+
+        private Entry(boolean removed, Vote vote) {
+            this.removed = removed;
+            this.vote = vote;
+        }
+
+        public boolean isRemoved() {
+            return removed;
+        }
+
+        public Vote getVote() {
+            return vote;
+        }
+    }
+
+    /**
+     * Records of the journal up to a position
+     */
+    public static class Snapshot {
+        private final List<Entry> entries;
+        private final long end;
+
+        private Snapshot(List<Entry> entries, long end) {
+            this.entries = Collections.unmodifiableList(entries);
+            this.end = end;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+    }
+}
@@ -0,0 +1,719 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.cache;
+
+import me.lorenzo0111.elections.api.objects.Vote;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+
+/**
+ * Map of votes by id kept in primitive columns.
+ * Vote and player ids are stored as two longs, the election and the party of a vote as a single code
+ * from a dictionary of the (election, party) pairs. {@link Vote} objects are built when they are asked for,
+ * except the ones that still have to be written, which are kept until {@link #settle(UUID, Vote)}
+ * so their {@link me.lorenzo0111.elections.database.Version} is not lost.
+ */
+public class VoteStore extends AbstractMap<UUID, Vote> {
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] idMsb = new long[INITIAL_CAPACITY];
+    private long[] idLsb = new long[INITIAL_CAPACITY];
+    private long[] playerMsb = new long[INITIAL_CAPACITY];
+    private long[] playerLsb = new long[INITIAL_CAPACITY];
+    private int[] ballots = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // open addressing with linear probing, every slot holds a row or EMPTY
+    private int[] byId = empty(INITIAL_CAPACITY * 2);
+    private int[] byVoter = empty(INITIAL_CAPACITY * 2);
+
+    private final Dictionary elections = new Dictionary();
+    private final Dictionary parties = new Dictionary();
+    private final Map<Long, Integer> ballotCodes = new HashMap<>();
+    private int[] ballotElection = new int[INITIAL_CAPACITY];
+    private int[] ballotParty = new int[INITIAL_CAPACITY];
+    private int ballotCount;
+    private int[] electionRows = new int[INITIAL_CAPACITY];
+
+    private final Map<UUID, Vote> pending = new HashMap<>();
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return key instanceof UUID && this.row((UUID) key) != EMPTY;
+    }
+
+    @Override
+    public synchronized Vote get(Object key) {
+        if (!(key instanceof UUID)) {
+            return null;
+        }
+
+        int row = this.row((UUID) key);
+        return row == EMPTY ? null : this.vote(row);
+    }
+
+    @Override
+    public synchronized Vote put(UUID key, Vote vote) {
+        if (!key.equals(vote.getId())) {
+            throw new IllegalArgumentException("VoteStore: votes are stored by their own id");
+        }
+
+        int row = this.row(key);
+        Vote previous = null;
+
+        if (row == EMPTY) {
+            this.ensureCapacity(size + 1);
+            row = size++;
+            idMsb[row] = key.getMostSignificantBits();
+            idLsb[row] = key.getLeastSignificantBits();
+            insert(byId, row, this.idHash(row));
+        } else {
+            previous = this.vote(row);
+            this.unlinkVoter(row);
+            electionRows[ballotElection[ballots[row]]]--;
+        }
+
+        playerMsb[row] = vote.getPlayer().getMostSignificantBits();
+        playerLsb[row] = vote.getPlayer().getLeastSignificantBits();
+        ballots[row] = this.ballot(vote.getElectionId(), vote.getParty());
+        electionRows[ballotElection[ballots[row]]]++;
+        this.linkVoter(row);
+
+        if (vote.version().isDirty()) {
+            pending.put(key, vote);
+        } else {
+            pending.remove(key);
+        }
+
+        return previous;
+    }
+
+    @Override
+    public synchronized Vote remove(Object key) {
+        if (!(key instanceof UUID)) {
+            return null;
+        }
+
+        int row = this.row((UUID) key);
+        if (row == EMPTY) {
+            return null;
+        }
+
+        Vote vote = this.vote(row);
+        this.delete(row);
+        return vote;
+    }
+
+    @Override
+    public synchronized boolean remove(Object key, Object value) {
+        if (!(key instanceof UUID) || value == null) {
+            return false;
+        }
+
+        int row = this.row((UUID) key);
+        if (row == EMPTY || !this.vote(row).equals(value)) {
+            return false;
+        }
+
+        this.delete(row);
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        Arrays.fill(byId, EMPTY);
+        Arrays.fill(byVoter, EMPTY);
+        Arrays.fill(electionRows, 0);
+        pending.clear();
+        size = 0;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super UUID, ? super Vote> action) {
+        for (Vote vote : this.snapshot()) {
+            action.accept(vote.getId(), vote);
+        }
+    }
+
+    @Override
+    public Set<UUID> keySet() {
+        return new AbstractSet<UUID>() {
+            @Override
+            public Iterator<UUID> iterator() {
+                Iterator<UUID> keys = VoteStore.this.keys().iterator();
+
+                return new Iterator<UUID>() {
+                    private UUID last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return keys.hasNext();
+                    }
+
+                    @Override
+                    public UUID next() {
+                        last = keys.next();
+                        return last;
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) {
+                            throw new IllegalStateException();
+                        }
+
+                        VoteStore.this.remove(last);
+                        last = null;
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return VoteStore.this.containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return VoteStore.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<UUID, Vote>> entrySet() {
+        return new AbstractSet<Entry<UUID, Vote>>() {
+            @Override
+            public Iterator<Entry<UUID, Vote>> iterator() {
+                Iterator<Vote> votes = VoteStore.this.snapshot().iterator();
+
+                return new Iterator<Entry<UUID, Vote>>() {
+                    private Vote last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return votes.hasNext();
+                    }
+
+                    @Override
+                    public Entry<UUID, Vote> next() {
+                        last = votes.next();
+                        return new SimpleImmutableEntry<>(last.getId(), last);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) {
+                            throw new IllegalStateException();
+                        }
+
+                        VoteStore.this.remove(last.getId(), last);
+                        last = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return VoteStore.this.size();
+            }
+        };
+    }
+
+    /**
+     * Stop keeping the instance of a vote once it has been written, it is built again from the columns when needed
+     * @param key Id of the vote
+     * @param vote The instance that has been written
+     */
+    public synchronized void settle(UUID key, Vote vote) {
+        if (pending.get(key) == vote && !vote.version().isDirty()) {
+            pending.remove(key);
+        }
+    }
+
+    /**
+     * Find the vote of a player in an election
+     * @param electionId Id of the election
+     * @param playerId Id of the player
+     * @return The vote, or null if the player didn't vote in that election. If the player has more than one, any of them
+     */
+    public synchronized Vote find(UUID electionId, UUID playerId) {
+        int election = elections.find(electionId);
+        if (election == EMPTY) {
+            return null;
+        }
+
+        long msb = playerId.getMostSignificantBits();
+        long lsb = playerId.getLeastSignificantBits();
+        int mask = byVoter.length - 1;
+
+        for (int slot = mix(election, msb, lsb) & mask; byVoter[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int row = byVoter[slot];
+            if (playerMsb[row] == msb && playerLsb[row] == lsb && ballotElection[ballots[row]] == election) {
+                return this.vote(row);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param electionId Id of the election
+     * @return Number of votes of the election
+     */
+    public synchronized int count(UUID electionId) {
+        int election = elections.find(electionId);
+        return election == EMPTY ? 0 : electionRows[election];
+    }
+
+    /**
+     * Collect the ids of the votes of some elections in a single pass over the rows
+     * @param electionIds Ids of the elections
+     * @return Ids of their votes
+     */
+    public synchronized List<UUID> keys(Collection<UUID> electionIds) {
+        List<UUID> keys = new ArrayList<>();
+
+        boolean[] wanted = new boolean[elections.size()];
+        boolean any = false;
+        for (UUID electionId : electionIds) {
+            int election = elections.find(electionId);
+            if (election != EMPTY && electionRows[election] > 0) {
+                wanted[election] = true;
+                any = true;
+            }
+        }
+
+        if (!any) {
+            return keys;
+        }
+
+        for (int row = 0; row < size; row++) {
+            if (wanted[ballotElection[ballots[row]]]) {
+                keys.add(new UUID(idMsb[row], idLsb[row]));
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * Count the votes of every party without building them
+     * @return Vote count of every party by election
+     */
+    public synchronized Map<UUID, Map<UUID, Integer>> counts() {
+        int[] counts = new int[ballotCount];
+        for (int row = 0; row < size; row++) {
+            counts[ballots[row]]++;
+        }
+
+        Map<UUID, Map<UUID, Integer>> result = new HashMap<>();
+        for (int ballot = 0; ballot < ballotCount; ballot++) {
+            if (counts[ballot] > 0) {
+                result.computeIfAbsent(elections.get(ballotElection[ballot]), id -> new HashMap<>())
+                    .put(parties.get(ballotParty[ballot]), counts[ballot]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Build only the votes whose election and party match, the filter runs once per distinct pair
+     * @param filter Tested with the id of the election and the id of the party
+     * @return The matching votes
+     */
+    public synchronized List<Vote> votesWhere(BiPredicate<UUID, UUID> filter) {
+        List<Vote> votes = new ArrayList<>();
+
+        boolean[] matches = new boolean[ballotCount];
+        boolean any = false;
+        for (int ballot = 0; ballot < ballotCount; ballot++) {
+            matches[ballot] = filter.test(elections.get(ballotElection[ballot]), parties.get(ballotParty[ballot]));
+            any |= matches[ballot];
+        }
+
+        if (!any) {
+            return votes;
+        }
+
+        for (int row = 0; row < size; row++) {
+            if (matches[ballots[row]]) {
+                votes.add(this.vote(row));
+            }
+        }
+
+        return votes;
+    }
+
+    /**
+     * Grow the columns and the indexes once before adding many votes
+     * @param capacity Number of votes the store will hold
+     */
+    public synchronized void reserve(int capacity) {
+        this.ensureCapacity(capacity);
+    }
+
+    /**
+     * Check the indexes and the counters against the columns
+     * @return true if every row is reachable from both indexes, no slot points elsewhere and the counters match
+     */
+    public synchronized boolean verify() {
+        int[] rows = new int[electionRows.length];
+        for (int row = 0; row < size; row++) {
+            if (this.row(new UUID(idMsb[row], idLsb[row])) != row || !this.reachable(byVoter, row, this.voterHash(row))) {
+                return false;
+            }
+
+            rows[ballotElection[ballots[row]]]++;
+        }
+
+        if (!Arrays.equals(rows, electionRows) || occupied(byId) != size || occupied(byVoter) != size) {
+            return false;
+        }
+
+        for (Map.Entry<UUID, Vote> entry : pending.entrySet()) {
+            int row = this.row(entry.getKey());
+            Vote vote = entry.getValue();
+
+            if (row == EMPTY || playerMsb[row] != vote.getPlayer().getMostSignificantBits() || playerLsb[row] != vote.getPlayer().getLeastSignificantBits()
+                || !elections.get(ballotElection[ballots[row]]).equals(vote.getElectionId()) || !parties.get(ballotParty[ballots[row]]).equals(vote.getParty())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Rebuild the indexes and the counters from the columns
+     */
+    public synchronized void reindex() {
+        Arrays.fill(byId, EMPTY);
+        Arrays.fill(byVoter, EMPTY);
+        Arrays.fill(electionRows, 0);
+
+        for (int row = 0; row < size; row++) {
+            insert(byId, row, this.idHash(row));
+            this.linkVoter(row);
+            electionRows[ballotElection[ballots[row]]]++;
+        }
+
+        pending.keySet().removeIf(key -> this.row(key) == EMPTY);
+    }
+
+    /**
+     * @return Bytes held by the columns and the indexes, without the votes that still have to be written
+     */
+    public synchronized long footprint() {
+        return idMsb.length * 8L * 4 + ballots.length * 4L
+            + (byId.length + byVoter.length) * 4L
+            + (ballotElection.length + ballotParty.length) * 4L
+            + elections.footprint() + parties.footprint();
+    }
+
+    private synchronized List<UUID> keys() {
+        List<UUID> keys = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            keys.add(new UUID(idMsb[row], idLsb[row]));
+        }
+
+        return keys;
+    }
+
+    private List<Vote> snapshot() {
+        List<Vote> votes;
+
+        synchronized (this) {
+            votes = new ArrayList<>(size);
+            for (int row = 0; row < size; row++) {
+                votes.add(this.vote(row));
+            }
+        }
+
+        return votes;
+    }
+
+    private Vote vote(int row) {
+        UUID id = new UUID(idMsb[row], idLsb[row]);
+
+        Vote vote = pending.get(id);
+        if (vote != null) {
+            return vote;
+        }
+
+        int ballot = ballots[row];
+        return new Vote(id, new UUID(playerMsb[row], playerLsb[row]), parties.get(ballotParty[ballot]), elections.get(ballotElection[ballot]), false);
+    }
+
+    private int row(UUID key) {
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        int mask = byId.length - 1;
+
+        for (int slot = mix(0, msb, lsb) & mask; byId[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int row = byId[slot];
+            if (idMsb[row] == msb && idLsb[row] == lsb) {
+                return row;
+            }
+        }
+
+        return EMPTY;
+    }
+
+    private void delete(int row) {
+        pending.remove(new UUID(idMsb[row], idLsb[row]));
+        electionRows[ballotElection[ballots[row]]]--;
+        this.unlinkVoter(row);
+        this.unlink(byId, row, this.idHash(row));
+
+        // keep the rows dense: the last one takes the place of the removed one
+        int last = --size;
+        if (row != last) {
+            this.relink(byId, last, row, this.idHash(last));
+            this.relink(byVoter, last, row, this.voterHash(last));
+
+            idMsb[row] = idMsb[last];
+            idLsb[row] = idLsb[last];
+            playerMsb[row] = playerMsb[last];
+            playerLsb[row] = playerLsb[last];
+            ballots[row] = ballots[last];
+        }
+    }
+
+    private void linkVoter(int row) {
+        // every row has its own slot, so removing one of two votes of a player leaves the other reachable
+        insert(byVoter, row, this.voterHash(row));
+    }
+
+    private void unlinkVoter(int row) {
+        this.unlink(byVoter, row, this.voterHash(row));
+    }
+
+    private void unlink(int[] table, int row, int hash) {
+        int mask = table.length - 1;
+
+        for (int slot = hash & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (table[slot] == row) {
+                this.shift(table, slot);
+                return;
+            }
+        }
+    }
+
+    private boolean reachable(int[] table, int row, int hash) {
+        int mask = table.length - 1;
+
+        for (int slot = hash & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (table[slot] == row) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void relink(int[] table, int from, int to, int hash) {
+        int mask = table.length - 1;
+
+        for (int slot = hash & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (table[slot] == from) {
+                table[slot] = to;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Empty a slot, moving back the following ones that would no longer be reachable
+     */
+    private void shift(int[] table, int slot) {
+        int mask = table.length - 1;
+        boolean voters = table == byVoter;
+
+        table[slot] = EMPTY;
+
+        for (int next = (slot + 1) & mask; table[next] != EMPTY; next = (next + 1) & mask) {
+            int row = table[next];
+            int home = (voters ? this.voterHash(row) : this.idHash(row)) & mask;
+
+            boolean reachable = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+            if (!reachable) {
+                table[slot] = row;
+                table[next] = EMPTY;
+                slot = next;
+            }
+        }
+    }
+
+    private int ballot(UUID electionId, UUID partyId) {
+        int election = elections.add(electionId);
+        int party = parties.add(partyId);
+
+        if (election == electionRows.length) {
+            electionRows = Arrays.copyOf(electionRows, election * 2);
+        }
+
+        return ballotCodes.computeIfAbsent(((long) election << 32) | (party & 0xFFFFFFFFL), key -> {
+            if (ballotCount == ballotElection.length) {
+                ballotElection = Arrays.copyOf(ballotElection, ballotCount * 2);
+                ballotParty = Arrays.copyOf(ballotParty, ballotCount * 2);
+            }
+
+            ballotElection[ballotCount] = election;
+            ballotParty[ballotCount] = party;
+            return ballotCount++;
+        });
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > idMsb.length) {
+            int length = Math.max(capacity, idMsb.length + (idMsb.length >> 1));
+
+            idMsb = Arrays.copyOf(idMsb, length);
+            idLsb = Arrays.copyOf(idLsb, length);
+            playerMsb = Arrays.copyOf(playerMsb, length);
+            playerLsb = Arrays.copyOf(playerLsb, length);
+            ballots = Arrays.copyOf(ballots, length);
+        }
+
+        // keep the indexes at most three quarters full
+        if (capacity * 4L > byId.length * 3L) {
+            int length = byId.length * 2;
+            while (capacity * 4L > length * 3L) {
+                length *= 2;
+            }
+
+            byId = empty(length);
+            byVoter = empty(length);
+
+            for (int row = 0; row < size; row++) {
+                insert(byId, row, this.idHash(row));
+                this.linkVoter(row);
+            }
+        }
+    }
+
+    private int idHash(int row) {
+        return mix(0, idMsb[row], idLsb[row]);
+    }
+
+    private int voterHash(int row) {
+        return mix(ballotElection[ballots[row]], playerMsb[row], playerLsb[row]);
+    }
+
+    private static void insert(int[] table, int row, int hash) {
+        int mask = table.length - 1;
+
+        int slot = hash & mask;
+        while (table[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+
+        table[slot] = row;
+    }
+
+    private static int occupied(int[] table) {
+        int occupied = 0;
+        for (int row : table) {
+            if (row != EMPTY) {
+                occupied++;
+            }
+        }
+
+        return occupied;
+    }
+
+    private static int mix(int seed, long msb, long lsb) {
+        long hash = (msb ^ Long.rotateLeft(lsb, 32) ^ seed) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static int[] empty(int length) {
+        int[] table = new int[length];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    /**
+     * Gives a small code to every distinct id, codes are never reused
+     */
+    private static class Dictionary {
+        private final Map<UUID, Integer> codes = new HashMap<>();
+        private UUID[] ids = new UUID[INITIAL_CAPACITY];
+
+        private int add(UUID id) {
+            Objects.requireNonNull(id);
+
+            return codes.computeIfAbsent(id, key -> {
+                int code = codes.size();
+                if (code == ids.length) {
+                    ids = Arrays.copyOf(ids, code * 2);
+                }
+
+                ids[code] = key;
+                return code;
+            });
+        }
+
+        private int size() {
+            return codes.size();
+        }
+
+        private int find(UUID id) {
+            Integer code = codes.get(id);
+            return code == null ? EMPTY : code;
+        }
+
+        private UUID get(int code) {
+            return ids[code];
+        }
+
+        private long footprint() {
+            // an entry of the map and a slot of the array, the ids themselves are shared
+            return codes.size() * 48L + ids.length * 4L;
+        }
+    }
+}
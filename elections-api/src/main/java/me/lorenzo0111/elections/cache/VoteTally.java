@@ -0,0 +1,168 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.cache;
+
+import me.lorenzo0111.elections.api.objects.CacheIndex;
+import me.lorenzo0111.elections.api.objects.Vote;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per election, per party vote counters kept up to date by the vote cache,
+ * so results can be read without walking every vote.
+ * Closed elections keep a summary of their counters instead, their votes don't have to be in the cache.
+ */
+public class VoteTally implements CacheIndex<UUID, Vote> {
+    private final Map<UUID, ElectionTally> elections = new ConcurrentHashMap<>();
+    private final Set<UUID> summarized = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param electionId Id of the election
+     * @return The tally of the election, or null if it never received a vote
+     */
+    public ElectionTally get(UUID electionId) {
+        return elections.get(electionId);
+    }
+
+    /**
+     * @param electionId Id of the election
+     * @return true if the counters of the election are a summary that the votes in the cache no longer change
+     */
+    public boolean isSummarized(UUID electionId) {
+        return summarized.contains(electionId);
+    }
+
+    /**
+     * Keep the current counters of an election as its summary
+     * @param electionId Id of the election
+     */
+    public void freeze(UUID electionId) {
+        summarized.add(electionId);
+    }
+
+    /**
+     * Replace the summary of an election
+     * @param electionId Id of the election
+     * @param partyVotes Vote count of every party
+     */
+    public void summarize(UUID electionId, Map<UUID, Integer> partyVotes) {
+        ElectionTally tally = new ElectionTally(electionId);
+        partyVotes.forEach(tally::set);
+
+        summarized.add(electionId);
+        elections.put(electionId, tally);
+    }
+
+    /**
+     * Replace every summary
+     * @param summaries Vote count of every party by election, the elections missing from it have no votes
+     */
+    public void summarize(Map<UUID, Map<UUID, Integer>> summaries) {
+        for (UUID electionId : summarized) {
+            if (!summaries.containsKey(electionId)) {
+                summarized.remove(electionId);
+                elections.remove(electionId);
+            }
+        }
+
+        summaries.forEach(this::summarize);
+    }
+
+    @Override
+    public void add(UUID key, Vote vote) {
+        if (summarized.contains(vote.getElectionId())) {
+            return;
+        }
+
+        elections.computeIfAbsent(vote.getElectionId(), ElectionTally::new).increment(vote.getParty());
+    }
+
+    @Override
+    public void remove(UUID key, Vote vote) {
+        if (summarized.contains(vote.getElectionId())) {
+            return;
+        }
+
+        ElectionTally tally = elections.get(vote.getElectionId());
+        if (tally != null) {
+            tally.decrement(vote.getParty());
+        }
+    }
+
+    @Override
+    public void clear() {
+        elections.clear();
+        summarized.clear();
+    }
+
+    /**
+     * Rebuild every counter but the summaries from scratch
+     * @param counts Vote count of every party by election, as counted from the cache
+     */
+    public void rebuild(Map<UUID, Map<UUID, Integer>> counts) {
+        Map<UUID, ElectionTally> rebuilt = new HashMap<>();
+        counts.forEach((electionId, partyVotes) -> {
+            if (!summarized.contains(electionId)) {
+                ElectionTally tally = new ElectionTally(electionId);
+                partyVotes.forEach(tally::set);
+                rebuilt.put(electionId, tally);
+            }
+        });
+
+        elections.keySet().removeIf(electionId -> !summarized.contains(electionId));
+        elections.putAll(rebuilt);
+    }
+
+    /**
+     * Compare the counters but the summaries against a count of the votes in the cache
+     * @param counts Vote count of every party by election, as counted from the cache
+     * @return true if every counter matches the count
+     */
+    public boolean verify(Map<UUID, Map<UUID, Integer>> counts) {
+        Map<UUID, Map<UUID, Integer>> expected = new HashMap<>(counts);
+        expected.keySet().removeIf(summarized::contains);
+
+        for (ElectionTally tally : elections.values()) {
+            if (summarized.contains(tally.getElectionId())) {
+                continue;
+            }
+
+            Map<UUID, Integer> partyVotes = tally.getPartyVotes();
+            if (partyVotes.isEmpty() && !expected.containsKey(tally.getElectionId())) {
+                continue;
+            }
+
+            if (!partyVotes.equals(expected.remove(tally.getElectionId()))) {
+                return false;
+            }
+        }
+
+        return expected.isEmpty();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.lorenzo0111.elections.cache;
+
+import me.lorenzo0111.elections.api.objects.CacheIndex;
+import me.lorenzo0111.elections.api.objects.Vote;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Set of the players that voted in every election, one bit per {@link PlayerOrdinals player ordinal}.
+ * The bitmap of a closed election is frozen: its votes leaving the cache don't clear it.
+ * A player can have more than one vote in an election for a while, the extra ones are counted so the bit stays set until the last one leaves.
+ */
+public class VoterBitmaps implements CacheIndex<UUID, Vote> {
+    private final PlayerOrdinals ordinals;
+    private final Map<UUID, BitSet> elections = new HashMap<>();
+    private final Map<UUID, Map<Integer, Integer>> extra = new HashMap<>();
+    private final Set<UUID> frozen = new HashSet<>();
+
+    public VoterBitmaps(PlayerOrdinals ordinals) {
+        this.ordinals = ordinals;
+    }
+
+    /**
+     * @param electionId Id of the election
+     * @param playerId Id of the player
+     * @return true if the player voted in the election
+     */
+    public synchronized boolean hasVoted(UUID electionId, UUID playerId) {
+        BitSet voters = elections.get(electionId);
+        int ordinal = ordinals.find(playerId);
+
+        return voters != null && ordinal >= 0 && voters.get(ordinal);
+    }
+
+    /**
+     * @param electionId Id of the election
+     * @return Number of players that voted in the election
+     */
+    public synchronized int turnout(UUID electionId) {
+        BitSet voters = elections.get(electionId);
+        return voters == null ? 0 : voters.cardinality();
+    }
+
+    /**
+     * @param electionIds Ids of the elections
+     * @return Number of players that voted in every one of the elections
+     */
+    public synchronized int turnout(Collection<UUID> electionIds) {
+        BitSet both = null;
+
+        for (UUID electionId : electionIds) {
+            BitSet voters = elections.get(electionId);
+            if (voters == null) {
+                return 0;
+            }
+
+            if (both == null) {
+                both = (BitSet) voters.clone();
+            } else {
+                both.and(voters);
+            }
+        }
+
+        return both == null ? 0 : both.cardinality();
+    }
+
+    /**
+     * @param electionId Id of the election
+     * @return true if the voters of the election are known
+     */
+    public synchronized boolean contains(UUID electionId) {
+        return elections.containsKey(electionId);
+    }
+
+    /**
+     * Keep the current voters of a closed election
+     * @param electionId Id of the election
+     */
+    public synchronized void freeze(UUID electionId) {
+        frozen.add(electionId);
+    }
+
+    /**
+     * Replace the voters of a closed election
+     * @param electionId Id of the election
+     * @param players Ids of the players that voted in it
+     */
+    public synchronized void freeze(UUID electionId, Collection<UUID> players) {
+        BitSet voters = new BitSet(ordinals.size());
+        players.forEach(player -> voters.set(ordinals.ordinal(player)));
+
+        frozen.add(electionId);
+        elections.put(electionId, voters);
+        extra.remove(electionId);
+    }
+
+    /**
+     * Forget the voters of closed elections, they are read again with their votes
+     * @param electionIds Ids of the elections
+     */
+    public synchronized void drop(Collection<UUID> electionIds) {
+        for (UUID electionId : electionIds) {
+            if (frozen.remove(electionId)) {
+                elections.remove(electionId);
+                extra.remove(electionId);
+            }
+        }
+    }
+
+    /**
+     * Forget the voters of every closed election
+     */
+    public synchronized void dropFrozen() {
+        this.drop(new HashSet<>(frozen));
+    }
+
+    @Override
+    public synchronized void add(UUID key, Vote vote) {
+        if (frozen.contains(vote.getElectionId())) {
+            return;
+        }
+
+        BitSet voters = elections.computeIfAbsent(vote.getElectionId(), id -> new BitSet());
+        int ordinal = ordinals.ordinal(vote.getPlayer());
+        if (voters.get(ordinal)) {
+            extra.computeIfAbsent(vote.getElectionId(), id -> new HashMap<>()).merge(ordinal, 1, Integer::sum);
+        } else {
+            voters.set(ordinal);
+        }
+    }
+
+    @Override
+    public synchronized void remove(UUID key, Vote vote) {
+        if (frozen.contains(vote.getElectionId())) {
+            return;
+        }
+
+        BitSet voters = elections.get(vote.getElectionId());
+        int ordinal = ordinals.find(vote.getPlayer());
+        if (voters == null || ordinal < 0) {
+            return;
+        }
+
+        // another vote of the same player is still in the cache
+        Map<Integer, Integer> duplicates = extra.get(vote.getElectionId());
+        if (duplicates != null && duplicates.containsKey(ordinal)) {
+            if (duplicates.merge(ordinal, -1, Integer::sum) == 0) {
+                duplicates.remove(ordinal);
+            }
+            if (duplicates.isEmpty()) {
+                extra.remove(vote.getElectionId());
+            }
+            return;
+        }
+
+        voters.clear(ordinal);
+    }
+
+    @Override
+    public synchronized void clear() {
+        elections.clear();
+        extra.clear();
+        frozen.clear();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.database;
+
+import me.lorenzo0111.elections.api.objects.DBHologram;
+import me.lorenzo0111.elections.api.objects.EClaim;
+import me.lorenzo0111.elections.api.objects.Election;
+import me.lorenzo0111.elections.api.objects.ElectionBlock;
+import me.lorenzo0111.elections.api.objects.Party;
+import me.lorenzo0111.elections.api.objects.Vote;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Rows added, updated or removed in the database since a change marker
+ */
+public class Changes {
+    private final List<Vote> votes = new ArrayList<>();
+    private final List<Party> parties = new ArrayList<>();
+    private final List<Election> elections = new ArrayList<>();
+    private final List<ElectionBlock> blocks = new ArrayList<>();
+    private final List<DBHologram> holograms = new ArrayList<>();
+    private final List<EClaim> claims = new ArrayList<>();
+    private final Map<String, Set<UUID>> removed = new HashMap<>();
+    private long marker;
+
+    /**
+     * @param marker Change marker the rows have been fetched from
+     */
+    public Changes(long marker) {
+        this.marker = marker;
+    }
+
+    /**
+     * Move the marker forward to a row's change marker
+     * @param updatedAt Change marker of a fetched row
+     */
+    public void seen(long updatedAt) {
+        this.marker = Math.max(marker, updatedAt);
+    }
+
+    public void removed(String table, UUID id) {
+        removed.computeIfAbsent(table, key -> new HashSet<>()).add(id);
+    }
+
+    /**
+     * @return The highest change marker fetched
+     */
+    public long getMarker() {
+        return marker;
+    }
+
+    public List<Vote> getVotes() {
+        return votes;
+    }
+
+    public List<Party> getParties() {
+        return parties;
+    }
+
+    public List<Election> getElections() {
+        return elections;
+    }
+
+    public List<ElectionBlock> getBlocks() {
+        return blocks;
+    }
+
+    public List<DBHologram> getHolograms() {
+        return holograms;
+    }
+
+    public List<EClaim> getClaims() {
+        return claims;
+    }
+
+    /**
+     * @param table Name of the table
+     * @return Ids of the rows removed from the table
+     */
+    public Set<UUID> getRemoved(String table) {
+        return removed.getOrDefault(table, Collections.emptySet());
+    }
+
+    public boolean isEmpty() {
+        return votes.isEmpty() && parties.isEmpty() && elections.isEmpty() && blocks.isEmpty()
+            && holograms.isEmpty() && claims.isEmpty() && removed.isEmpty();
+    }
+}
@@ -25,6 +25,7 @@
 package me.lorenzo0111.elections.database;
 
 import me.lorenzo0111.pluginslib.StringUtils;
+import me.lorenzo0111.pluginslib.database.connection.HikariConnection;
 import me.lorenzo0111.pluginslib.database.connection.IConnectionHandler;
 import me.lorenzo0111.pluginslib.database.connection.JavaConnection;
 import me.lorenzo0111.pluginslib.database.objects.Column;
@@ -33,10 +34,16 @@ import me.lorenzo0111.pluginslib.scheduler.IScheduler;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
 /**
@@ -45,15 +52,31 @@ import java.util.logging.Logger;
 @SuppressWarnings("unused")
 public class ETable {
     private final Logger logger;
-    private final IScheduler scheduler;
+    private final Executor executor;
     private final IConnectionHandler connection;
     private final String name;
     private final List<Column> columns;
     private final String REPLACE_START = "REPLACE INTO %s (";
+    private final Set<String> uuidColumns = ConcurrentHashMap.newKeySet();
+    private ETable tombstones;
+    private volatile TableTrigger trigger;
+    private final Map<String, String> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Change marker column, set to the write time of every row of a table that tracks changes
+     */
+    public static final String UPDATED_AT = "updated_at";
 
     public ETable(Logger logger, IScheduler scheduler, IConnectionHandler connection, String name, List<Column> columns) {
+        this(logger, (Executor) scheduler::async, connection, name, columns);
+    }
+
+    /**
+     * @param executor Executor that runs every query of this table, in submission order if it is single threaded
+     */
+    public ETable(Logger logger, Executor executor, IConnectionHandler connection, String name, List<Column> columns) {
         this.logger = logger;
-        this.scheduler = scheduler;
+        this.executor = executor;
         this.connection = connection;
         this.name = name;
         this.columns = columns;
@@ -67,24 +90,158 @@ public class ETable {
 
         columns.forEach(column -> query.append(String.format("`%s` %s,", column.getName(), column.getType())));
 
-        try {
-            Statement statement = connection.getConnection().createStatement();
+        try (Lease lease = this.lease(); Statement statement = lease.get().createStatement()) {
             statement.executeUpdate(StringUtils.removeLastChar(query.toString()) + ");");
-            statement.close();
         } catch (SQLException ex) {
             ex.printStackTrace();
         }
     }
+
     public void setUnique(String indexName, String columnName) {
+        this.createIndex(indexName, String.format("CREATE UNIQUE INDEX %s ON %s(%s);", indexName, name, columnName));
+    }
+
+    /**
+     * @param columnName Column, or comma separated columns of a composite index
+     */
+    public void setIndex(String indexName, String columnName) {
+        this.createIndex(indexName, String.format("CREATE INDEX %s ON %s(%s);", indexName, name, columnName));
+    }
+
+    private void createIndex(String indexName, String query) {
+        indexes.put(indexName, query);
+
+        // MySQL has no CREATE INDEX IF NOT EXISTS
         try {
-            Statement statement = connection.getConnection().createStatement();
-            statement.executeUpdate(String.format("CREATE UNIQUE INDEX IF NOT EXISTS %s ON %s(%s);", indexName, name, columnName));
-            statement.close();
+            if (this.hasIndex(indexName)) {
+                return;
+            }
+
+            try (Lease lease = this.lease(); Statement statement = lease.get().createStatement()) {
+                statement.executeUpdate(query);
+            }
         } catch (SQLException ex) {
             ex.printStackTrace();
         }
     }
 
+    /**
+     * @param indexName Name of the index
+     * @return true if the table has an index with that name
+     * @throws SQLException if something goes wrong
+     */
+    public boolean hasIndex(String indexName) throws SQLException {
+        try (Lease lease = this.lease();
+             ResultSet indexes = lease.get().getMetaData().getIndexInfo(lease.get().getCatalog(), null, name, false, false)) {
+            while (indexes.next()) {
+                if (indexName.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Store the UUIDs of these columns in 16 bytes instead of their text form
+     * @param columns Names of the columns, none to keep every UUID in its text form
+     */
+    public void setUUIDColumns(String... columns) {
+        uuidColumns.clear();
+        uuidColumns.addAll(Arrays.asList(columns));
+    }
+
+    /**
+     * @return Names of the columns that store UUIDs in 16 bytes
+     */
+    public Set<String> getUUIDColumns() {
+        return uuidColumns;
+    }
+
+    /**
+     * Convert a value to the form it is stored with in a column
+     * @param column Name of the column
+     * @param value UUID or text of a UUID for a UUID column, anything else is returned as is
+     * @return The value to bind
+     */
+    public Object toColumn(String column, Object value) {
+        if (value == null || !uuidColumns.contains(column)) {
+            return value;
+        }
+
+        if (value instanceof UUID) {
+            return UUIDs.toBytes((UUID) value);
+        }
+
+        if (value instanceof String) {
+            try {
+                return UUIDs.toBytes(UUID.fromString((String) value));
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Stamp every written row with {@link #UPDATED_AT} and record removed rows in a tombstone table,
+     * so that only the rows changed since a given time have to be fetched — Doesn't return until the column exists.
+     * @param tombstones Table with the tbl, id and updated_at columns
+     */
+    public void trackChanges(ETable tombstones) {
+        try (Lease lease = this.lease()) {
+            Connection conn = lease.get();
+
+            try (ResultSet columns = conn.getMetaData().getColumns(conn.getCatalog(), null, name, UPDATED_AT)) {
+                if (!columns.next()) {
+                    try (Statement statement = conn.createStatement()) {
+                        statement.executeUpdate(String.format("ALTER TABLE %s ADD COLUMN %s BIGINT DEFAULT 0;", name, UPDATED_AT));
+                    }
+                }
+            }
+
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return;
+        }
+
+        this.setIndex(String.format("idx_%s_%s", name, UPDATED_AT), UPDATED_AT);
+        this.tombstones = tombstones;
+    }
+
+    /**
+     * Add the change marker and the indexes of this table again, after the table has been replaced by a copy
+     */
+    public void restore() {
+        if (tombstones != null) {
+            this.trackChanges(tombstones);
+        }
+
+        indexes.forEach(this::createIndex);
+    }
+
+    /**
+     * @param trigger Trigger to run in the transaction of every batch, or null to remove it
+     */
+    public void setTrigger(TableTrigger trigger) {
+        this.trigger = trigger;
+    }
+
+    /**
+     * @return Trigger run in the transaction of every batch, or null
+     */
+    public TableTrigger getTrigger() {
+        return trigger;
+    }
+
+    /**
+     * @return true if the rows of this table carry a change marker
+     */
+    public boolean tracksChanges() {
+        return tombstones != null;
+    }
+
     /**
      * Get all items from table
      * @return a result set with all the entries of the table
@@ -122,38 +279,69 @@ public class ETable {
 
         this.run(() -> {
             try {
-                StringBuilder builder = new StringBuilder(Queries.builder().query(REPLACE_START).table(name).build());
+                Map<String, Object> map = this.row(serializable);
 
-                Map<String, Object> map = serializable.serialize();
+                final PreparedStatement statement = connection.getConnection().prepareStatement(replaceQuery(map.keySet()));
 
-                for (String column : map.keySet()) {
-                    builder.append(column).append(",");
+                int i = 1;
+                for (Map.Entry<String, Object> entry : map.entrySet()) {
+                    statement.setObject(i, this.toColumn(entry.getKey(), entry.getValue()));
+                    i++;
                 }
 
-                builder = new StringBuilder(StringUtils.removeLastChar(builder.toString()));
-
-                builder.append(")");
-
-                builder.append(" VALUES (");
+                statement.executeUpdate();
+                statement.close();
+                future.complete(true);
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+                future.complete(false);
+            }
+        });
 
-                for (int i = 0; i < map.size(); i++) {
-                    builder.append("?,");
-                }
+        return future;
+    }
 
-                builder = new StringBuilder(StringUtils.removeLastChar(builder.toString()));
+    /**
+     * Adds or replaces many {@link EDatabaseSerializable} with a single batch in one transaction
+     * @param serializables Items to add to the table
+     * @return A completable future with true if every item has been written
+     */
+    public CompletableFuture<Boolean> addOrReplaceAll(Collection<? extends EDatabaseSerializable> serializables) {
+        CompletableFuture<Boolean> future = new CompletableFuture<Boolean>();
 
-                builder.append(");");
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (EDatabaseSerializable serializable : serializables) {
+            if (serializable.version().isDirty()) {
+                rows.add(this.row(serializable));
+            }
+        }
 
-                final PreparedStatement statement = connection.getConnection().prepareStatement(builder.toString());
+        if (rows.isEmpty()) {
+            future.complete(true);
+            return future;
+        }
 
-                int i = 1;
-                for (Object obj : map.values()) {
-                    statement.setObject(i, obj);
-                    i++;
-                }
+        this.run(() -> {
+            List<String> columns = new ArrayList<>(rows.get(0).keySet());
 
-                statement.executeUpdate();
-                statement.close();
+            try {
+                this.transaction(conn -> {
+                    TableTrigger trigger = this.trigger;
+                    if (trigger != null) {
+                        trigger.replacing(conn, this, rows);
+                    }
+
+                    this.executeBatch(conn, replaceQuery(columns), statement -> {
+                        for (Map<String, Object> row : rows) {
+                            int i = 1;
+                            for (String column : columns) {
+                                statement.setObject(i, this.toColumn(column, row.get(column)));
+                                i++;
+                            }
+                            statement.addBatch();
+                        }
+                    });
+                });
                 future.complete(true);
             } catch (SQLException ex) {
                 ex.printStackTrace();
@@ -164,6 +352,40 @@ public class ETable {
         return future;
     }
 
+    private Map<String, Object> row(EDatabaseSerializable serializable) {
+        Map<String, Object> map = serializable.serialize();
+
+        if (tombstones != null) {
+            map.put(UPDATED_AT, System.currentTimeMillis());
+        }
+
+        return map;
+    }
+
+    private String replaceQuery(Collection<String> columns) {
+        StringBuilder builder = new StringBuilder(Queries.builder().query(REPLACE_START).table(name).build());
+
+        for (String column : columns) {
+            builder.append(column).append(",");
+        }
+
+        builder = new StringBuilder(StringUtils.removeLastChar(builder.toString()));
+
+        builder.append(")");
+
+        builder.append(" VALUES (");
+
+        for (int i = 0; i < columns.size(); i++) {
+            builder.append("?,");
+        }
+
+        builder = new StringBuilder(StringUtils.removeLastChar(builder.toString()));
+
+        builder.append(");");
+
+        return builder.toString();
+    }
+
     /**
      * Clear the table
      */
@@ -191,7 +413,7 @@ public class ETable {
         this.run(() -> {
             try {
                 final PreparedStatement statement = getConnection().prepareStatement(Queries.builder().query(Queries.DELETE_WHERE).table(name).keys(key).build());
-                statement.setObject(1, value);
+                statement.setObject(1, this.toColumn(key, value));
 
                 statement.executeUpdate();
                 future.complete(true);
@@ -205,6 +427,138 @@ public class ETable {
         return future;
     }
 
+    /**
+     * Remove many rows from the table with a single batch in one transaction
+     * @param key key to find
+     * @param values Values of the key
+     * @return A completable future with true if every row has been removed
+     */
+    public CompletableFuture<Boolean> removeAll(String key, Collection<?> values) {
+        final CompletableFuture<Boolean> future = new CompletableFuture<Boolean>();
+
+        if (values.isEmpty()) {
+            future.complete(true);
+            return future;
+        }
+
+        List<Object> keys = new ArrayList<>(values);
+
+        this.run(() -> {
+            try {
+                this.transaction(conn -> {
+                    TableTrigger trigger = this.trigger;
+                    if (trigger != null) {
+                        trigger.removing(conn, this, key, keys);
+                    }
+
+                    this.executeBatch(conn, Queries.builder().query(Queries.DELETE_WHERE).table(name).keys(key).build(), statement -> {
+                        for (Object value : keys) {
+                            statement.setObject(1, this.toColumn(key, value));
+                            statement.addBatch();
+                        }
+                    });
+
+                    if (tombstones != null) {
+                        long now = System.currentTimeMillis();
+
+                        this.executeBatch(conn, String.format("INSERT INTO %s (tbl, id, %s) VALUES (?,?,?);", tombstones.getName(), UPDATED_AT), statement -> {
+                            for (Object value : keys) {
+                                statement.setString(1, name);
+                                statement.setObject(2, tombstones.toColumn("id", String.valueOf(value)));
+                                statement.setLong(3, now);
+                                statement.addBatch();
+                            }
+                        });
+                    }
+                });
+                future.complete(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                future.complete(false);
+            }
+        });
+
+        return future;
+    }
+
+    private void executeBatch(Connection conn, String query, StatementBinder binder) throws SQLException {
+        try (PreparedStatement statement = conn.prepareStatement(query)) {
+            binder.bind(statement);
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Run something inside a single transaction, rolling it back if something goes wrong
+     * @param body Statements of the transaction
+     * @throws SQLException if something goes wrong
+     */
+    public void transaction(TransactionBody body) throws SQLException {
+        try (Lease lease = this.lease()) {
+            Connection conn = lease.get();
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            try {
+                body.run(conn);
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Borrow a connection for one unit of work, to be closed with try-with-resources.
+     * A pooled connection goes back to the pool when the lease is closed, the single connection of SQLite stays open.
+     * @return The lease
+     * @throws SQLException if something goes wrong
+     */
+    public Lease lease() throws SQLException {
+        return lease(connection);
+    }
+
+    /**
+     * @param handler Handler to borrow the connection from
+     * @return A lease on a connection of the handler
+     * @throws SQLException if something goes wrong
+     */
+    public static Lease lease(IConnectionHandler handler) throws SQLException {
+        return new Lease(handler.getConnection(), handler instanceof HikariConnection);
+    }
+
+    public static final class Lease implements AutoCloseable {
+        private final Connection connection;
+        private final boolean pooled;
+
+        private Lease(Connection connection, boolean pooled) {
+            this.connection = connection;
+            this.pooled = pooled;
+        }
+
+        public Connection get() {
+            return connection;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (pooled) {
+                connection.close();
+            }
+        }
+    }
+
+    public interface TransactionBody {
+        void run(Connection conn) throws SQLException;
+    }
+
+    private interface StatementBinder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
     /**
      * Find something inside the table
      * @param key Key to find
@@ -217,7 +571,7 @@ public class ETable {
         this.run(() -> {
             try {
                 final PreparedStatement statement = getConnection().prepareStatement(Queries.builder().query(Queries.FIND).table(name).keys(key).build());
-                statement.setObject(1, value);
+                statement.setObject(1, this.toColumn(key, value));
 
                 future.complete(statement.executeQuery());
                 statement.closeOnCompletion();
@@ -235,7 +589,7 @@ public class ETable {
      * @param runnable Runnable to run
      */
     public void run(Runnable runnable) {
-        scheduler.async(runnable);
+        executor.execute(runnable);
     }
 
     /**
@@ -259,4 +613,14 @@ public class ETable {
     public List<Column> getColumns() {
         return columns;
     }
+
+    /**
+     * @param name Name of the new table
+     * @return A table with the same columns under another name
+     */
+    public ETable withName(String name) {
+        ETable table = new ETable(logger, executor, connection, name, columns);
+        table.uuidColumns.addAll(uuidColumns);
+        return table;
+    }
 }
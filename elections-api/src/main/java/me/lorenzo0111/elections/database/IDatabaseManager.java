@@ -32,9 +32,13 @@ import me.lorenzo0111.elections.api.objects.Party;
 import me.lorenzo0111.elections.api.objects.Vote;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface IDatabaseManager {
     void closeConnection() throws SQLException;
@@ -48,6 +52,32 @@ public interface IDatabaseManager {
     CompletableFuture<Boolean> deleteParty(Party party);
 
     CompletableFuture<List<Vote>> getVotes();
+
+    /**
+     * @param electionId Id of the election
+     * @return A completable future with the votes of the election, or null if they couldn't be read
+     */
+    CompletableFuture<List<Vote>> getVotes(UUID electionId);
+
+    /**
+     * Stream the votes that stay in the cache: the ones of open elections and of elections that no longer exist
+     * @param consumer Receives the votes on the database thread
+     * @return A completable future with the number of votes read, or null if they couldn't be read
+     */
+    CompletableFuture<Integer> streamResidentVotes(Consumer<Vote> consumer);
+
+    /**
+     * Count the votes of every closed election
+     * @return A completable future with the vote count of every party by election, or null if they couldn't be counted
+     */
+    CompletableFuture<Map<UUID, Map<UUID, Integer>>> getClosedTallies();
+
+    /**
+     * Count the votes of some elections
+     * @param electionIds Ids of the elections
+     * @return A completable future with the vote count of every party by election, or null if they couldn't be counted
+     */
+    CompletableFuture<Map<UUID, Map<UUID, Integer>>> getTallies(Collection<UUID> electionIds);
     CompletableFuture<Boolean> updateVote(Vote vote);
     CompletableFuture<Boolean> deleteVote(Vote vote);
 
@@ -62,4 +92,41 @@ public interface IDatabaseManager {
     CompletableFuture<Map<String, EClaim>> getClaims();
     CompletableFuture<Boolean> updateClaim(EClaim claim);
     CompletableFuture<Boolean> deleteClaim(EClaim claim);
+
+    /**
+     * Write many entries with one batch per table
+     * @param entries Entries to write, they can belong to different tables
+     * @return A completable future with true if every batch has been written
+     */
+    CompletableFuture<Boolean> updateAll(Collection<? extends EDatabaseSerializable> entries);
+
+    /**
+     * Delete many entries with one batch per table
+     * @param entries Entries to delete, they can belong to different tables
+     * @return A completable future with true if every batch has been written
+     */
+    CompletableFuture<Boolean> deleteAll(Collection<? extends EDatabaseSerializable> entries);
+
+    /**
+     * Fetch the rows changed since a change marker
+     * @param since Change marker of the last sync
+     * @return A completable future with the changes, or null if they couldn't be fetched
+     */
+    CompletableFuture<Changes> getChanges(long since);
+
+    /**
+     * Fetch the current rows of some entries, the ones that no longer exist are reported as removed
+     * @param ids Ids of the entries by table name
+     * @return A completable future with the changes, or null if they couldn't be fetched
+     */
+    CompletableFuture<Changes> getChanges(Map<String, Set<UUID>> ids);
+
+    /**
+     * Read a whole table with a forward-only cursor, handing every row to the consumer as soon as it is decoded
+     * @param table Name of the table
+     * @param reader Decodes a row
+     * @param consumer Receives the rows on the database thread
+     * @return A completable future with the number of rows read, or null if the table couldn't be read
+     */
+    <T> CompletableFuture<Integer> stream(String table, RowReader<T> reader, Consumer<T> consumer);
 }
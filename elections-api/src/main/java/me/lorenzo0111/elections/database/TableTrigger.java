@@ -0,0 +1,54 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.lorenzo0111.elections.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs inside the transaction of every batch written to a table, before the batch itself,
+ * so whatever it writes commits or rolls back together with the rows
+ */
+public interface TableTrigger {
+    /**
+     * @param conn Connection of the transaction
+     * @param table Table being written
+     * @param rows Rows about to be added or replaced
+     * @throws SQLException to roll the batch back
+     */
+    void replacing(Connection conn, ETable table, List<Map<String, Object>> rows) throws SQLException;
+
+    /**
+     * @param conn Connection of the transaction
+     * @param table Table being written
+     * @param key Column the rows are removed by
+     * @param values Values of the key of the rows about to be removed
+     * @throws SQLException to roll the batch back
+     */
+    void removing(Connection conn, ETable table, String key, List<Object> values) throws SQLException;
+}
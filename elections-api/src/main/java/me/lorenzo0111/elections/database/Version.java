@@ -1,8 +1,9 @@
 package me.lorenzo0111.elections.database;
 
 public class Version {
-    private Integer version;
-    private Integer last;
+    private volatile Integer version;
+    private volatile Integer last;
+    private volatile Runnable listener;
 
     public Version(boolean dirty) {
         this.last = 0;
@@ -25,8 +26,20 @@ public class Version {
         this.last = last;
     }
 
+    /**
+     * @param listener Called every time the version is marked dirty, or null to remove it
+     */
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
     public void dirty() {
         this.version++;
+
+        Runnable listener = this.listener;
+        if (listener != null) {
+            listener.run();
+        }
     }
 
     public boolean isDirty() {
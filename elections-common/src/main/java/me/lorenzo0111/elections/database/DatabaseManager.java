@@ -35,6 +35,8 @@ import me.lorenzo0111.elections.api.objects.Party;
 import me.lorenzo0111.elections.api.objects.Vote;
 import me.lorenzo0111.elections.cache.CacheManager;
 import me.lorenzo0111.elections.scheduler.IAdvancedScheduler;
+import me.lorenzo0111.elections.sync.CoherenceService;
+import me.lorenzo0111.elections.sync.DatabaseTransport;
 import me.lorenzo0111.elections.tasks.CacheTask;
 import me.lorenzo0111.pluginslib.database.connection.HikariConnection;
 import me.lorenzo0111.pluginslib.database.connection.IConnectionHandler;
@@ -45,14 +47,27 @@ import org.spongepowered.configurate.ConfigurationNode;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
 public class DatabaseManager implements IDatabaseManager {
@@ -63,6 +78,17 @@ public class DatabaseManager implements IDatabaseManager {
     private ETable blocksTable;
     private ETable hologramsTable;
     private ETable claimsTable;
+    private ETable tombstonesTable;
+    private ETable talliesTable;
+    private VoteTallies tallies;
+    private volatile boolean talliesReady;
+    private CoherenceService coherence;
+    private static final int FETCH_CHUNK = 500;
+    private static final int FETCH_SIZE = 1000;
+    private static final long TOMBSTONE_TTL = TimeUnit.DAYS.toMillis(1);
+    private final Map<String, ETable> tablesByName = new HashMap<>();
+    private DatabaseExecutor executor;
+    private WriteBehindQueue writes;
 
     private final IConnectionHandler connectionHandler;
 
@@ -91,6 +117,8 @@ public class DatabaseManager implements IDatabaseManager {
         config.addDataSourceProperty("user", configuration.node("database", "username").getString());
         config.addDataSourceProperty("password", configuration.node("database", "password").getString());
         config.addDataSourceProperty("useSSL", configuration.node("database", "ssl").getString());
+        // fetch large tables in FETCH_SIZE rows instead of buffering the whole result
+        config.addDataSourceProperty("useCursorFetch", "true");
 
         IConnectionHandler handler = null;
 
@@ -110,270 +138,623 @@ public class DatabaseManager implements IDatabaseManager {
     }
 
     private void tables(IAdvancedScheduler scheduler, CacheManager cache, ConfigurationNode config) {
+        this.executor = new DatabaseExecutor(logger, "ElectionsPlus Database");
+        this.writes = new WriteBehindQueue(logger, executor, config.node("database", "queue-warning").getInt(5000));
+
+        String uuid = connectionHandler instanceof SQLiteConnection ? "BLOB" : "BINARY(16)";
+        String updatedAt = "BIGINT DEFAULT 0";
+
         // Votes
         List<Column> votesColumns = new ArrayList<>();
-        votesColumns.add(new Column("id", "TEXT"));
-        votesColumns.add(new Column("player", "TEXT"));
-        votesColumns.add(new Column("party", "TEXT"));
-        votesColumns.add(new Column("electionId", "TEXT"));
-        this.votesTable = new ETable(logger, scheduler, connectionHandler, "votes", votesColumns);
-        this.votesTable.create();
-        this.votesTable.setUnique("idx_vote_id", "id");
+        votesColumns.add(new Column("id", uuid));
+        votesColumns.add(new Column("player", uuid));
+        votesColumns.add(new Column("party", uuid));
+        votesColumns.add(new Column("electionId", uuid));
+        votesColumns.add(new Column(ETable.UPDATED_AT, updatedAt));
+        this.votesTable = new ETable(logger, executor, connectionHandler, "votes", votesColumns);
+        this.votesTable.setUUIDColumns("id", "player", "party", "electionId");
+        this.tablesByName.put(votesTable.getName(), votesTable);
 
         // Parties
         List<Column> partiesColumns = new ArrayList<>();
-        partiesColumns.add(new Column("id", "TEXT"));
+        partiesColumns.add(new Column("id", uuid));
         partiesColumns.add(new Column("name", "TEXT"));
-        partiesColumns.add(new Column("owner", "TEXT"));
+        partiesColumns.add(new Column("owner", uuid));
         partiesColumns.add(new Column("icon", "TEXT nullable"));
         partiesColumns.add(new Column("members", "TEXT"));
-        this.partiesTable = new ETable(logger, scheduler, connectionHandler, "parties", partiesColumns);
-        this.partiesTable.create();
-        this.partiesTable.setUnique("idx_party_id", "id");
+        partiesColumns.add(new Column(ETable.UPDATED_AT, updatedAt));
+        this.partiesTable = new ETable(logger, executor, connectionHandler, "parties", partiesColumns);
+        this.partiesTable.setUUIDColumns("id", "owner");
+        this.tablesByName.put(partiesTable.getName(), partiesTable);
 
         // Elections
         List<Column> electionsColumns = new ArrayList<>();
-        electionsColumns.add(new Column("id", "TEXT"));
+        electionsColumns.add(new Column("id", uuid));
         electionsColumns.add(new Column("name", "TEXT"));
         electionsColumns.add(new Column("parties", "TEXT"));
         electionsColumns.add(new Column("open", "INTEGER"));
-        this.electionsTable = new ETable(logger, scheduler, connectionHandler, "elections", electionsColumns);
-        this.electionsTable.create();
-        this.electionsTable.setUnique("idx_election_id", "id");
+        electionsColumns.add(new Column(ETable.UPDATED_AT, updatedAt));
+        this.electionsTable = new ETable(logger, executor, connectionHandler, "elections", electionsColumns);
+        this.electionsTable.setUUIDColumns("id");
+        this.tablesByName.put(electionsTable.getName(), electionsTable);
 
         // Blocks
         List<Column> blocksColumns = new ArrayList<>();
-        blocksColumns.add(new Column("id", "TEXT"));
-        blocksColumns.add(new Column("world", "TEXT"));
+        blocksColumns.add(new Column("id", uuid));
+        blocksColumns.add(new Column("world", uuid));
         blocksColumns.add(new Column("location", "TEXT"));
         blocksColumns.add(new Column("blockdata", "TEXT"));
-        this.blocksTable = new ETable(logger, scheduler, connectionHandler, "blocks", blocksColumns);
-        this.blocksTable.create();
-        this.blocksTable.setUnique("idx_block_id", "id");
+        blocksColumns.add(new Column(ETable.UPDATED_AT, updatedAt));
+        this.blocksTable = new ETable(logger, executor, connectionHandler, "blocks", blocksColumns);
+        this.blocksTable.setUUIDColumns("id", "world");
+        this.tablesByName.put(blocksTable.getName(), blocksTable);
 
         // Holograms
         List<Column> hologramsColumns = new ArrayList<>();
-        hologramsColumns.add(new Column("id", "TEXT"));
+        hologramsColumns.add(new Column("id", uuid));
         hologramsColumns.add(new Column("name", "TEXT"));
         hologramsColumns.add(new Column("location", "TEXT"));
         hologramsColumns.add(new Column("contents", "TEXT"));
-        this.hologramsTable = new ETable(logger, scheduler, connectionHandler, "holograms", hologramsColumns);
-        this.hologramsTable.create();
-        this.hologramsTable.setUnique("idx_hologram_id", "id");
+        hologramsColumns.add(new Column(ETable.UPDATED_AT, updatedAt));
+        this.hologramsTable = new ETable(logger, executor, connectionHandler, "holograms", hologramsColumns);
+        this.hologramsTable.setUUIDColumns("id");
+        this.tablesByName.put(hologramsTable.getName(), hologramsTable);
 
         // Claims
         List<Column> claimsColumns = new ArrayList<>();
-        claimsColumns.add(new Column("id", "TEXT"));
+        claimsColumns.add(new Column("id", uuid));
         claimsColumns.add(new Column("name", "TEXT"));
-        claimsColumns.add(new Column("gpid", "TEXT"));
+        claimsColumns.add(new Column("gpid", "BIGINT"));
         claimsColumns.add(new Column("owner", "TEXT"));
-        this.claimsTable = new ETable(logger, scheduler, connectionHandler, "claims", claimsColumns);
-        this.claimsTable.create();
-        this.claimsTable.setUnique("idx_claim_id", "id");
+        claimsColumns.add(new Column(ETable.UPDATED_AT, updatedAt));
+        this.claimsTable = new ETable(logger, executor, connectionHandler, "claims", claimsColumns);
+        this.claimsTable.setUUIDColumns("id");
+        this.tablesByName.put(claimsTable.getName(), claimsTable);
+
+        // Tombstones of removed rows, so other servers can drop them without a full reload
+        List<Column> tombstonesColumns = new ArrayList<>();
+        tombstonesColumns.add(new Column("tbl", "TEXT"));
+        tombstonesColumns.add(new Column("id", uuid));
+        tombstonesColumns.add(new Column(ETable.UPDATED_AT, "BIGINT"));
+        this.tombstonesTable = new ETable(logger, executor, connectionHandler, "tombstones", tombstonesColumns);
+        this.tombstonesTable.setUUIDColumns("id");
+
+        List<Column> notificationsColumns = new ArrayList<>();
+        notificationsColumns.add(new Column("origin", "TEXT"));
+        notificationsColumns.add(new Column("tbl", "TEXT"));
+        notificationsColumns.add(new Column("id", uuid));
+        notificationsColumns.add(new Column("version", "BIGINT"));
+        ETable notificationsTable = new ETable(logger, executor, connectionHandler, "notifications", notificationsColumns);
+        notificationsTable.setUUIDColumns("id");
+
+        // Vote count of every party by election, written in the same transaction as the votes
+        List<Column> talliesColumns = new ArrayList<>();
+        talliesColumns.add(new Column("electionId", uuid));
+        talliesColumns.add(new Column("partyId", uuid));
+        talliesColumns.add(new Column("count", "INTEGER"));
+        this.talliesTable = new ETable(logger, executor, connectionHandler, "vote_tallies", talliesColumns);
+        this.talliesTable.setUUIDColumns("electionId", "partyId");
+        this.tallies = new VoteTallies(logger, votesTable, talliesTable);
+
+        boolean sync = config.node("database", "sync").getString("NONE").equalsIgnoreCase("DATABASE");
+
+        List<ETable> tables = new ArrayList<>(tablesByName.values());
+        tables.add(tombstonesTable);
+        tables.add(notificationsTable);
+
+        TypedColumnsMigration typedColumns = new TypedColumnsMigration(logger, tables, new HashSet<>(Arrays.asList(tombstonesTable.getName(), notificationsTable.getName())));
+
+        // Tables still in the old layout are used as they are until the migration replaces them, so the caches load meanwhile
+        this.executor.execute(() -> {
+            try (ETable.Lease lease = ETable.lease(connectionHandler)) {
+                typedColumns.prepare(lease.get());
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+
+            for (ETable table : tables) {
+                if (table != notificationsTable || sync) {
+                    table.create();
+                }
+            }
+
+            this.votesTable.setUnique("idx_vote_id", "id");
+            this.partiesTable.setUnique("idx_party_id", "id");
+            this.electionsTable.setUnique("idx_election_id", "id");
+            this.blocksTable.setUnique("idx_block_id", "id");
+            this.hologramsTable.setUnique("idx_hologram_id", "id");
+            this.claimsTable.setUnique("idx_claim_id", "id");
+            this.votesTable.setIndex("idx_vote_election_player", "electionId, player");
+            this.votesTable.setIndex("idx_vote_election_party", "electionId, party");
+
+            for (ETable table : tablesByName.values()) {
+                table.trackChanges(tombstonesTable);
+            }
+            this.tombstonesTable.setIndex("idx_tombstone_updated_at", ETable.UPDATED_AT);
+
+            if (sync) {
+                notificationsTable.setIndex("idx_notification_version", "version");
+            }
+        });
 
-        scheduler.async(new CacheTask(this.logger, scheduler, this, cache));
+        // one chunk at a time on the database thread, the other queries run between two chunks
+        new SchemaMigrator(logger, connectionHandler)
+                .add(1, "typed columns", typedColumns)
+                .add(2, "vote tallies", conn -> {
+                    talliesTable.create();
+                    talliesTable.setUnique("idx_tally_id", "electionId, partyId");
+                    tallies.reconcileNow();
+                })
+                .migrate(executor)
+                .thenAccept(migrated -> {
+                    if (migrated) {
+                        this.votesTable.setTrigger(tallies);
+                        this.talliesReady = true;
+                    }
+                });
+
+        if (sync) {
+            String origin = UUID.randomUUID().toString();
+            this.coherence = new CoherenceService(logger, scheduler, this, cache, new DatabaseTransport(notificationsTable, origin), origin);
+            this.writes.setListener(coherence::committed);
+            this.coherence.start(Math.max(1, config.node("database", "sync-interval").getInt(1)));
+        }
+
+        int reconcileMinutes = config.node("database", "reconcile-tallies").getInt(60);
+        if (reconcileMinutes > 0) {
+            scheduler.repeating(() -> {
+                if (talliesReady) {
+                    tallies.reconcile();
+                }
+            }, reconcileMinutes * 60 * 20L, reconcileMinutes * 60, TimeUnit.SECONDS);
+        }
+
+        // the tombstones outlive many resyncs, purging them once an hour is enough
+        scheduler.repeating(this::purgeTombstones, 60 * 60 * 20L, 60 * 60, TimeUnit.SECONDS);
+
+        long resyncSeconds = Math.max(1L, Math.round(config.node("cache-duration").getDouble(5) * 60));
+
+        scheduler.async(new CacheTask(this.logger, scheduler, this, cache, resyncSeconds));
     }
 
     @Override
     public void closeConnection() throws SQLException {
+        try {
+            writes.flush().get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warning(String.format("DatabaseManager: %d writes were not flushed before shutdown", writes.getQueueDepth()));
+        }
+
+        if (coherence != null) {
+            coherence.close();
+        }
+
+        executor.shutdown(10, TimeUnit.SECONDS);
         connectionHandler.close();
     }
 
     @Override
     public CompletableFuture<List<Vote>> getVotes() {
-        CompletableFuture<List<Vote>> future = new CompletableFuture<>();
+        List<Vote> rows = new ArrayList<>();
 
-        this.votesTable.run(() -> {
-                try {
-                    PreparedStatement statement = votesTable.getConnection().prepareStatement(String.format("SELECT * FROM %s;", votesTable.getName()));
-                    ResultSet resultSet = statement.executeQuery();
-                    List<Vote> votes = new ArrayList<>();
-                    while (resultSet.next()) {
-                        Vote vote = Vote.fromResultSet(resultSet);
-                        votes.add(vote);
-                    }
-                    future.complete(votes);
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    future.complete(null);
-                }
-        });
+        return this.stream(votesTable.getName(), Vote::fromResultSet, rows::add)
+                .thenApply(count -> count == null ? null : rows);
+    }
 
-        return future;
+    @Override
+    public CompletableFuture<List<Vote>> getVotes(UUID electionId) {
+        List<Vote> rows = new ArrayList<>();
+
+        return this.query(votesTable, String.format("SELECT * FROM %s WHERE electionId = ?;", votesTable.getName()), Collections.singletonList(votesTable.toColumn("electionId", electionId)), Vote::fromResultSet, rows::add)
+                .thenApply(count -> count == null ? null : rows);
+    }
+
+    @Override
+    public CompletableFuture<Integer> streamResidentVotes(Consumer<Vote> consumer) {
+        String query = String.format("SELECT v.* FROM %s v LEFT JOIN %s e ON e.id = v.electionId WHERE e.id IS NULL OR e.open <> 0;", votesTable.getName(), electionsTable.getName());
+
+        return this.query(votesTable, query, Collections.emptyList(), Vote::fromResultSet, consumer);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, Map<UUID, Integer>>> getClosedTallies() {
+        Map<UUID, Map<UUID, Integer>> tallies = new HashMap<>();
+        String query = talliesReady
+                ? String.format("SELECT t.electionId, t.partyId AS party, t.`count` AS votes FROM %s t JOIN %s e ON e.id = t.electionId WHERE e.open = 0 AND t.`count` > 0;", talliesTable.getName(), electionsTable.getName())
+                : String.format("SELECT v.electionId, v.party, COUNT(*) AS votes FROM %s v JOIN %s e ON e.id = v.electionId WHERE e.open = 0 GROUP BY v.electionId, v.party;", votesTable.getName(), electionsTable.getName());
+
+        return this.query(votesTable, query, Collections.emptyList(), this::tally, row -> this.count(tallies, row))
+                .thenApply(count -> count == null ? null : tallies);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, Map<UUID, Integer>>> getTallies(Collection<UUID> electionIds) {
+        Map<UUID, Map<UUID, Integer>> tallies = new HashMap<>();
+        List<CompletableFuture<Integer>> chunks = new ArrayList<>();
+
+        List<UUID> all = new ArrayList<>(electionIds);
+        for (int from = 0; from < all.size(); from += FETCH_CHUNK) {
+            List<Object> chunk = new ArrayList<>();
+            for (UUID electionId : all.subList(from, Math.min(all.size(), from + FETCH_CHUNK))) {
+                chunk.add(votesTable.toColumn("electionId", electionId));
+            }
+
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            String query = talliesReady
+                    ? String.format("SELECT electionId, partyId AS party, `count` AS votes FROM %s WHERE electionId IN (%s) AND `count` > 0;", talliesTable.getName(), placeholders)
+                    : String.format("SELECT electionId, party, COUNT(*) AS votes FROM %s WHERE electionId IN (%s) GROUP BY electionId, party;", votesTable.getName(), placeholders);
+
+            chunks.add(this.query(votesTable, query, chunk, this::tally, row -> this.count(tallies, row)));
+        }
+
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> chunks.stream().allMatch(chunk -> chunk.join() != null) ? tallies : null);
+    }
+
+    private Object[] tally(ResultSet resultSet) throws SQLException {
+        return new Object[]{UUIDs.read(resultSet, "electionId"), UUIDs.read(resultSet, "party"), resultSet.getInt("votes")};
+    }
+
+    private void count(Map<UUID, Map<UUID, Integer>> tallies, Object[] row) {
+        tallies.computeIfAbsent((UUID) row[0], id -> new HashMap<>()).merge((UUID) row[1], (Integer) row[2], Integer::sum);
     }
 
     @Override
     public CompletableFuture<Boolean> updateVote(Vote vote) {
-        return votesTable.addOrReplace(vote);
+        return writes.update(votesTable, vote);
     }
 
     @Override
     public CompletableFuture<Boolean> deleteVote(Vote vote) {
-        return votesTable.removeWhere("id", vote.getId());
+        return writes.delete(votesTable, vote);
     }
 
     @Override
     public CompletableFuture<Map<String, Party>> getParties() {
-        CompletableFuture<Map<String, Party>> future = new CompletableFuture<>();
+        Map<String, Party> rows = new HashMap<>();
 
-        this.partiesTable.run(() -> {
-                try {
-                    PreparedStatement statement = partiesTable.getConnection().prepareStatement(String.format("SELECT * FROM %s;", partiesTable.getName()));
-                    ResultSet resultSet = statement.executeQuery();
-                    Map<String, Party> parties = new HashMap<>();
-                    while (resultSet.next()) {
-                        Party party = Party.fromResultSet(resultSet);
-                        parties.put(party.getName(), party);
-                    }
-                    future.complete(parties);
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    future.complete(null);
-                }
-        });
-
-        return future;
+        return this.stream(partiesTable.getName(), Party::fromResultSet, row -> rows.put(row.getName(), row))
+                .thenApply(count -> count == null ? null : rows);
     }
 
     @Override
     public CompletableFuture<Boolean> updateParty(Party party) {
-        return partiesTable.addOrReplace(party);
+        return writes.update(partiesTable, party);
     }
 
     @Override
     public CompletableFuture<Boolean> deleteParty(Party party) {
-        return partiesTable.removeWhere("id", party.getId());
+        return writes.delete(partiesTable, party);
     }
 
     @Override
     public CompletableFuture<Map<String, Election>> getElections() {
-        CompletableFuture<Map<String, Election>> future = new CompletableFuture<>();
-
-        this.electionsTable.run(() -> {
-                try {
-                    PreparedStatement statement = electionsTable.getConnection().prepareStatement(String.format("SELECT * FROM %s;", electionsTable.getName()));
-                    ResultSet resultSet = statement.executeQuery();
-                    Map<String, Election> elections = new HashMap<>();
-                    while (resultSet.next()) {
-                        Election election = Election.fromResultSet(resultSet);
-                        elections.put(election.getName(), election);
-                    }
-                    future.complete(elections);
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    future.complete(null);
-                }
-        });
+        Map<String, Election> rows = new HashMap<>();
 
-        return future;
+        return this.stream(electionsTable.getName(), Election::fromResultSet, row -> rows.put(row.getName(), row))
+                .thenApply(count -> count == null ? null : rows);
     }
 
     @Override
     public CompletableFuture<Boolean> updateElection(Election election) {
-        return electionsTable.addOrReplace(election);
+        return writes.update(electionsTable, election);
     }
 
     @Override
     public CompletableFuture<Boolean> deleteElection(Election election) {
-        return electionsTable.removeWhere("id", election.getId());
+        return writes.delete(electionsTable, election);
     }
 
     @Override
     public CompletableFuture<List<ElectionBlock>> getBlocks() {
-        CompletableFuture<List<ElectionBlock>> future = new CompletableFuture<>();
+        List<ElectionBlock> rows = new ArrayList<>();
 
-        this.blocksTable.run(() -> {
-                try {
-                    PreparedStatement statement = blocksTable.getConnection().prepareStatement(String.format("SELECT * FROM %s;", blocksTable.getName()));
-                    ResultSet resultSet = statement.executeQuery();
-                    List<ElectionBlock> blocks = new ArrayList<>();
-                    while (resultSet.next()) {
-                        ElectionBlock block = ElectionBlock.fromResultSet(resultSet);
-                        blocks.add(block);
-                    }
-                    future.complete(blocks);
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    future.complete(null);
-                }
-        });
-
-        return future;
+        return this.stream(blocksTable.getName(), ElectionBlock::fromResultSet, rows::add)
+                .thenApply(count -> count == null ? null : rows);
     }
     
     @Override
     public CompletableFuture<Boolean> updateBlock(ElectionBlock block) {
-        return blocksTable.addOrReplace(block);
+        return writes.update(blocksTable, block);
     }
 
     @Override
     public CompletableFuture<Boolean> deleteBlock(ElectionBlock block) {
-        return blocksTable.removeWhere("id", block.getId());
+        return writes.delete(blocksTable, block);
     }
 
     @Override
     public CompletableFuture<Map<String, DBHologram>> getHolograms() {
-        CompletableFuture<Map<String, DBHologram>> future = new CompletableFuture<>();
+        Map<String, DBHologram> rows = new HashMap<>();
 
-        this.hologramsTable.run(() -> {
-                try {
-                    PreparedStatement statement = hologramsTable.getConnection().prepareStatement(String.format("SELECT * FROM %s;", hologramsTable.getName()));
-                    ResultSet resultSet = statement.executeQuery();
-                    Map<String, DBHologram> holograms = new HashMap<>();
-                    while (resultSet.next()) {
-                        DBHologram dbholo = DBHologram.fromResultSet(resultSet);
-                        holograms.put(dbholo.getName(), dbholo);
-                    }
-                    future.complete(holograms);
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    future.complete(null);
-                }
-        });
-
-        return future;
+        return this.stream(hologramsTable.getName(), DBHologram::fromResultSet, row -> rows.put(row.getName(), row))
+                .thenApply(count -> count == null ? null : rows);
     }
     
     @Override
     public CompletableFuture<Boolean> updateHologram(DBHologram dbholo) {
-        return hologramsTable.addOrReplace(dbholo);
+        return writes.update(hologramsTable, dbholo);
     }
 
     @Override
     public CompletableFuture<Boolean> deleteHologram(DBHologram dbholo) {
-        return hologramsTable.removeWhere("id", dbholo.getId());
+        return writes.delete(hologramsTable, dbholo);
     }
 
     @Override
     public CompletableFuture<Map<String, EClaim>> getClaims() {
-        CompletableFuture<Map<String, EClaim>> future = new CompletableFuture<>();
+        Map<String, EClaim> rows = new HashMap<>();
 
-        this.claimsTable.run(() -> {
-                try {
-                    PreparedStatement statement = claimsTable.getConnection().prepareStatement(String.format("SELECT * FROM %s;", claimsTable.getName()));
-                    ResultSet resultSet = statement.executeQuery();
-                    Map<String, EClaim> claims = new HashMap<>();
-                    while (resultSet.next()) {
-                        EClaim eclaim = EClaim.fromResultSet(resultSet);
-                        claims.put(eclaim.getName(), eclaim);
+        return this.stream(claimsTable.getName(), EClaim::fromResultSet, row -> rows.put(row.getName(), row))
+                .thenApply(count -> count == null ? null : rows);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateClaim(EClaim eclaim) {
+        return writes.update(claimsTable, eclaim);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteClaim(EClaim eclaim) {
+        return writes.delete(claimsTable, eclaim);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateAll(Collection<? extends EDatabaseSerializable> entries) {
+        return this.enqueue(entries, writes::update);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteAll(Collection<? extends EDatabaseSerializable> entries) {
+        return this.enqueue(entries, writes::delete);
+    }
+
+    /**
+     * @return The service that keeps the servers sharing this database coherent, or null if it is disabled
+     */
+    public CoherenceService getCoherence() {
+        return coherence;
+    }
+
+    /**
+     * @return The vote counters kept in the vote_tallies table
+     */
+    public VoteTallies getTallies() {
+        return tallies;
+    }
+
+    /**
+     * @return The write-behind queue of this connection, with its backpressure metrics
+     */
+    public WriteBehindQueue getWriteQueue() {
+        return writes;
+    }
+
+    private CompletableFuture<Boolean> enqueue(Collection<? extends EDatabaseSerializable> entries, BiFunction<ETable, EDatabaseSerializable, CompletableFuture<Boolean>> writer) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+        for (EDatabaseSerializable entry : entries) {
+            ETable table = tablesByName.get(entry.tableName());
+            if (table == null) {
+                logger.severe("DatabaseManager: no table named " + entry.tableName());
+                futures.add(CompletableFuture.completedFuture(false));
+                continue;
+            }
+
+            futures.add(writer.apply(table, entry));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .thenApply(ignored -> futures.stream().allMatch(CompletableFuture::join));
+    }
+
+    @Override
+    public CompletableFuture<Changes> getChanges(long since) {
+        CompletableFuture<Changes> future = new CompletableFuture<>();
+
+        this.tombstonesTable.run(() -> {
+            try (ETable.Lease lease = tombstonesTable.lease()) {
+                Connection conn = lease.get();
+                Changes changes = new Changes(since);
+
+                this.changed(conn, votesTable, since, changes, Vote::fromResultSet, changes.getVotes());
+                this.changed(conn, partiesTable, since, changes, Party::fromResultSet, changes.getParties());
+                this.changed(conn, electionsTable, since, changes, Election::fromResultSet, changes.getElections());
+                this.changed(conn, blocksTable, since, changes, ElectionBlock::fromResultSet, changes.getBlocks());
+                this.changed(conn, hologramsTable, since, changes, DBHologram::fromResultSet, changes.getHolograms());
+                this.changed(conn, claimsTable, since, changes, EClaim::fromResultSet, changes.getClaims());
+
+                try (PreparedStatement statement = conn.prepareStatement(String.format("SELECT * FROM %s WHERE %s >= ?;", tombstonesTable.getName(), ETable.UPDATED_AT))) {
+                    statement.setLong(1, since);
+
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            changes.seen(resultSet.getLong(ETable.UPDATED_AT));
+
+                            try {
+                                changes.removed(resultSet.getString("tbl"), UUIDs.read(resultSet, "id"));
+                            } catch (RuntimeException e) {
+                                logger.warning(String.format("DatabaseManager: skipping a malformed row of %s: %s", tombstonesTable.getName(), e));
+                            }
+                        }
                     }
-                    future.complete(claims);
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    future.complete(null);
                 }
+
+                future.complete(changes);
+            } catch (SQLException | RuntimeException e) {
+                // the resync waits for this future before it runs again
+                e.printStackTrace();
+                future.complete(null);
+            }
         });
 
         return future;
     }
 
+    /**
+     * Drop the tombstones older than {@link #TOMBSTONE_TTL}, servers that were offline for longer do a full load when they start
+     */
+    private void purgeTombstones() {
+        this.tombstonesTable.run(() -> {
+            try (ETable.Lease lease = tombstonesTable.lease();
+                 PreparedStatement statement = lease.get().prepareStatement(String.format("DELETE FROM %s WHERE %s < ?;", tombstonesTable.getName(), ETable.UPDATED_AT))) {
+                statement.setLong(1, System.currentTimeMillis() - TOMBSTONE_TTL);
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
     @Override
-    public CompletableFuture<Boolean> updateClaim(EClaim eclaim) {
-        return claimsTable.addOrReplace(eclaim);
+    public CompletableFuture<Changes> getChanges(Map<String, Set<UUID>> ids) {
+        CompletableFuture<Changes> future = new CompletableFuture<>();
+
+        this.votesTable.run(() -> {
+            try (ETable.Lease lease = votesTable.lease()) {
+                Connection conn = lease.get();
+                Changes changes = new Changes(0);
+
+                this.fetch(conn, votesTable, ids, changes, Vote::fromResultSet, Vote::getId, changes.getVotes());
+                this.fetch(conn, partiesTable, ids, changes, Party::fromResultSet, Party::getId, changes.getParties());
+                this.fetch(conn, electionsTable, ids, changes, Election::fromResultSet, Election::getId, changes.getElections());
+                this.fetch(conn, blocksTable, ids, changes, ElectionBlock::fromResultSet, ElectionBlock::getId, changes.getBlocks());
+                this.fetch(conn, hologramsTable, ids, changes, DBHologram::fromResultSet, DBHologram::getId, changes.getHolograms());
+                this.fetch(conn, claimsTable, ids, changes, EClaim::fromResultSet, EClaim::getId, changes.getClaims());
+
+                future.complete(changes);
+            } catch (SQLException | RuntimeException e) {
+                e.printStackTrace();
+                future.complete(null);
+            }
+        });
+
+        return future;
+    }
+
+    private <T> void fetch(Connection conn, ETable table, Map<String, Set<UUID>> ids, Changes changes, RowReader<T> reader, Function<T, UUID> key, List<T> rows) throws SQLException {
+        Set<UUID> wanted = ids.get(table.getName());
+        if (wanted == null || wanted.isEmpty()) {
+            return;
+        }
+
+        Set<UUID> missing = new HashSet<>(wanted);
+        List<UUID> all = new ArrayList<>(wanted);
+
+        for (int from = 0; from < all.size(); from += FETCH_CHUNK) {
+            List<UUID> chunk = all.subList(from, Math.min(all.size(), from + FETCH_CHUNK));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+
+            try (PreparedStatement statement = conn.prepareStatement(String.format("SELECT * FROM %s WHERE id IN (%s);", table.getName(), placeholders))) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    statement.setObject(i + 1, table.toColumn("id", chunk.get(i)));
+                }
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        T row = this.read(table, resultSet, reader);
+                        if (row == null) {
+                            // still in the table, it must not be taken for a removal
+                            this.present(resultSet, missing);
+                            continue;
+                        }
+
+                        rows.add(row);
+                        missing.remove(key.apply(row));
+                    }
+                }
+            }
+        }
+
+        missing.forEach(id -> changes.removed(table.getName(), id));
+    }
+
+    private <T> void changed(Connection conn, ETable table, long since, Changes changes, RowReader<T> reader, List<T> rows) throws SQLException {
+        try (PreparedStatement statement = conn.prepareStatement(String.format("SELECT * FROM %s WHERE %s >= ?;", table.getName(), ETable.UPDATED_AT))) {
+            statement.setLong(1, since);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    changes.seen(resultSet.getLong(ETable.UPDATED_AT));
+
+                    T row = this.read(table, resultSet, reader);
+                    if (row != null) {
+                        rows.add(row);
+                    }
+                }
+            }
+        }
+    }
+
+    private void present(ResultSet resultSet, Set<UUID> missing) throws SQLException {
+        try {
+            missing.remove(UUIDs.read(resultSet, "id"));
+        } catch (RuntimeException e) {
+            // the row can't be matched to a notified id, report no removal rather than a wrong one
+            missing.clear();
+        }
+    }
+
+    /**
+     * @return The row, or null if it is malformed and has been skipped
+     */
+    private <T> T read(ETable table, ResultSet resultSet, RowReader<T> reader) throws SQLException {
+        try {
+            return reader.read(resultSet);
+        } catch (RuntimeException e) {
+            logger.warning(String.format("DatabaseManager: skipping a malformed row of %s: %s", table.getName(), e));
+            return null;
+        }
     }
 
     @Override
-    public CompletableFuture<Boolean> deleteClaim(EClaim eclaim) {
-        return claimsTable.removeWhere("id", eclaim.getId());
+    public <T> CompletableFuture<Integer> stream(String table, RowReader<T> reader, Consumer<T> consumer) {
+        ETable source = tablesByName.get(table);
+        if (source == null) {
+            logger.severe("DatabaseManager: no table named " + table);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return this.query(source, String.format("SELECT * FROM %s;", source.getName()), Collections.emptyList(), reader, consumer);
+    }
+
+    private <T> CompletableFuture<Integer> query(ETable source, String query, List<Object> parameters, RowReader<T> reader, Consumer<T> consumer) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        String table = source.getName();
+
+        source.run(() -> {
+            try (ETable.Lease lease = source.lease();
+                 PreparedStatement statement = lease.get().prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(FETCH_SIZE);
+                for (int i = 0; i < parameters.size(); i++) {
+                    statement.setObject(i + 1, parameters.get(i));
+                }
+
+                int rows = 0;
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        T row;
+                        try {
+                            row = reader.read(resultSet);
+                        } catch (RuntimeException e) {
+                            logger.warning(String.format("DatabaseManager: skipping a malformed row of %s: %s", table, e));
+                            continue;
+                        }
+
+                        consumer.accept(row);
+                        rows++;
+                    }
+                }
+
+                future.complete(rows);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                future.complete(null);
+            }
+        });
+
+        return future;
     }
-}
\ No newline at end of file
+}
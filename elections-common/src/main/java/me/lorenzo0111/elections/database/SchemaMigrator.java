@@ -0,0 +1,182 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.lorenzo0111.elections.database;
+
+import me.lorenzo0111.pluginslib.database.connection.IConnectionHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+/**
+ * Applies ordered schema migrations once, recording each applied version in the schema_version table
+ */
+public class SchemaMigrator {
+    private static final String TABLE = "schema_version";
+
+    private final Logger logger;
+    private final IConnectionHandler connection;
+    private final TreeMap<Integer, Step> steps = new TreeMap<>();
+
+    public SchemaMigrator(Logger logger, IConnectionHandler connection) {
+        this.logger = logger;
+        this.connection = connection;
+    }
+
+    /**
+     * @param version Version reached once the migration is applied, migrations run from the lowest version
+     * @param description Description stored with the version
+     * @param migration Migration to apply
+     * @return this migrator
+     */
+    public SchemaMigrator add(int version, String description, Migration migration) {
+        steps.put(version, new Step(description, migration));
+        return this;
+    }
+
+    /**
+     * Apply every migration newer than the current version on the database thread, stopping at the first that fails
+     * so it is retried on the next start. A {@link ChunkedMigration} runs one chunk per task, so the queries queued
+     * meanwhile run between two chunks.
+     * @param executor Database thread
+     * @return A completable future with true once the schema is up to date, false if a migration failed
+     */
+    public CompletableFuture<Boolean> migrate(Executor executor) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        executor.execute(() -> {
+            try (ETable.Lease lease = ETable.lease(connection)) {
+                Connection conn = lease.get();
+
+                try (Statement statement = conn.createStatement()) {
+                    statement.executeUpdate(String.format("CREATE TABLE IF NOT EXISTS %s (version INTEGER, description TEXT, applied_at BIGINT);", TABLE));
+                }
+
+                this.next(executor, steps.tailMap(this.version(conn), false).entrySet().iterator(), future);
+            } catch (SQLException ex) {
+                this.failed(ex, future);
+            }
+        });
+
+        return future;
+    }
+
+    private void next(Executor executor, Iterator<Map.Entry<Integer, Step>> pending, CompletableFuture<Boolean> future) {
+        if (!pending.hasNext()) {
+            future.complete(true);
+            return;
+        }
+
+        Map.Entry<Integer, Step> entry = pending.next();
+        logger.info(String.format("SchemaMigrator: migrating the database to version %d (%s)", entry.getKey(), entry.getValue().description));
+        this.apply(executor, entry, System.currentTimeMillis(), pending, future);
+    }
+
+    private void apply(Executor executor, Map.Entry<Integer, Step> entry, long start, Iterator<Map.Entry<Integer, Step>> pending, CompletableFuture<Boolean> future) {
+        executor.execute(() -> {
+            try (ETable.Lease lease = ETable.lease(connection)) {
+                Connection conn = lease.get();
+                Migration migration = entry.getValue().migration;
+
+                if (migration instanceof ChunkedMigration) {
+                    if (((ChunkedMigration) migration).step(conn)) {
+                        // queued behind whatever was submitted during this chunk
+                        this.apply(executor, entry, start, pending, future);
+                        return;
+                    }
+                } else {
+                    migration.apply(conn);
+                }
+
+                try (PreparedStatement statement = conn.prepareStatement(String.format("INSERT INTO %s (version, description, applied_at) VALUES (?,?,?);", TABLE))) {
+                    statement.setInt(1, entry.getKey());
+                    statement.setString(2, entry.getValue().description);
+                    statement.setLong(3, System.currentTimeMillis());
+                    statement.executeUpdate();
+                }
+
+                logger.info(String.format("SchemaMigrator: database migrated to version %d in %d ms", entry.getKey(), System.currentTimeMillis() - start));
+                this.next(executor, pending, future);
+            } catch (SQLException ex) {
+                this.failed(ex, future);
+            }
+        });
+    }
+
+    private void failed(SQLException ex, CompletableFuture<Boolean> future) {
+        logger.severe("SchemaMigrator: the database migration failed, it will be retried on the next start");
+        ex.printStackTrace();
+        future.complete(false);
+    }
+
+    private int version(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet resultSet = statement.executeQuery(String.format("SELECT MAX(version) FROM %s;", TABLE))) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    public interface Migration {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Migration applied a chunk at a time
+     */
+    public interface ChunkedMigration extends Migration {
+        /**
+         * @param conn Connection of this chunk
+         * @return true if there are more chunks to apply
+         * @throws SQLException if something goes wrong
+         */
+        boolean step(Connection conn) throws SQLException;
+
+        @Override
+        default void apply(Connection conn) throws SQLException {
+            while (this.step(conn)) {
+                // until done
+            }
+        }
+    }
+
+    private static class Step {
+        private final String description;
+        private final Migration migration;
+
+        private Step(String description, Migration migration) {
+            this.description = description;
+            this.migration = migration;
+        }
+    }
+}
@@ -0,0 +1,437 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.lorenzo0111.elections.database;
+
+import me.lorenzo0111.pluginslib.database.objects.Column;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Moves tables from the old layout, where every column is TEXT, to typed columns with UUIDs stored in 16 bytes.
+ * Rows are copied by key, one chunk per step, to tables with the new layout that replace the old ones once every
+ * table is copied. Until then the old tables keep being read and written: the rows written meanwhile are copied again
+ * right before the swap. An interrupted copy starts over on the next start.
+ */
+public class TypedColumnsMigration implements SchemaMigrator.ChunkedMigration {
+    private static final int CHUNK = 500;
+    private static final String SUFFIX = "_typed";
+
+    private final Logger logger;
+    private final List<ETable> tables;
+    private final Set<String> disposable;
+    private final Map<ETable, String[]> uuidColumns = new HashMap<>();
+
+    private final Map<ETable, Copy> copies = new LinkedHashMap<>();
+    private int current;
+    private Copy copy;
+
+    /**
+     * @param tables Tables with the new layout, keyed by an id column
+     * @param disposable Names of the tables whose rows don't need to be kept, they are recreated empty
+     */
+    public TypedColumnsMigration(Logger logger, List<ETable> tables, Set<String> disposable) {
+        this.logger = logger;
+        this.tables = tables;
+        this.disposable = disposable;
+
+        for (ETable table : tables) {
+            uuidColumns.put(table, table.getUUIDColumns().toArray(new String[0]));
+        }
+    }
+
+    /**
+     * Make the tables usable before they are migrated: finish an interrupted swap, recreate the disposable tables
+     * and keep UUIDs as text in the tables that still have the old layout — Doesn't return until they are usable.
+     * @param conn Connection to use
+     * @throws SQLException if something goes wrong
+     */
+    public void prepare(Connection conn) throws SQLException {
+        for (ETable table : tables) {
+            String name = table.getName();
+
+            if (!this.exists(conn, name)) {
+                if (this.exists(conn, name + SUFFIX)) {
+                    // stopped between the drop and the rename
+                    this.execute(conn, String.format("ALTER TABLE %s%s RENAME TO %s;", name, SUFFIX, name));
+                }
+                continue;
+            }
+
+            if (!isLegacy(conn, name)) {
+                continue;
+            }
+
+            if (disposable.contains(name)) {
+                this.execute(conn, String.format("DROP TABLE %s;", name));
+                table.create();
+                logger.info(String.format("TypedColumnsMigration: recreated %s", name));
+            } else {
+                table.setUUIDColumns();
+            }
+        }
+    }
+
+    @Override
+    public boolean step(Connection conn) throws SQLException {
+        if (current < tables.size()) {
+            ETable table = tables.get(current);
+
+            if (copy == null) {
+                copy = this.begin(conn, table);
+            }
+
+            if (copy != null && this.chunk(conn, copy)) {
+                return true;
+            }
+
+            if (copy != null) {
+                copies.put(table, copy);
+                copy = null;
+            }
+
+            current++;
+            return true;
+        }
+
+        // swapped together, so a query joining two tables never sees both layouts
+        for (Map.Entry<ETable, Copy> entry : copies.entrySet()) {
+            this.finish(conn, entry.getKey(), entry.getValue());
+        }
+        copies.clear();
+
+        return false;
+    }
+
+    private Copy begin(Connection conn, ETable table) throws SQLException {
+        String name = table.getName();
+        if (disposable.contains(name) || !this.exists(conn, name) || !isLegacy(conn, name)) {
+            return null;
+        }
+
+        ETable typed = table.withName(name + SUFFIX);
+        typed.setUUIDColumns(uuidColumns.get(table));
+
+        if (this.exists(conn, typed.getName())) {
+            // rows written to the old table while an interrupted copy ran may be missing from it
+            this.execute(conn, String.format("DROP TABLE %s;", typed.getName()));
+        }
+
+        typed.create();
+
+        Copy copy = new Copy(name, typed, this.shared(conn, table), table.getTrigger());
+        table.setTrigger(copy);
+        return copy;
+    }
+
+    /**
+     * @return false once every row has been copied
+     */
+    private boolean chunk(Connection conn, Copy copy) throws SQLException {
+        String name = copy.name;
+        String select = String.format("SELECT %s FROM %s WHERE id > ? ORDER BY id LIMIT %d;", copy.names(), name, CHUNK);
+
+        List<Object[]> rows = new ArrayList<>();
+        String next = copy.last;
+        int read = 0;
+
+        try (PreparedStatement statement = conn.prepareStatement(select)) {
+            statement.setString(1, copy.last);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    read++;
+
+                    String id = resultSet.getString("id");
+                    if (id.equals(next)) {
+                        copy.skipped++;
+                        continue;
+                    }
+                    next = id;
+
+                    Object[] row = this.convert(copy.typed, copy.columns, resultSet);
+                    if (row == null) {
+                        logger.warning(String.format("TypedColumnsMigration: skipping malformed row %s of %s", id, name));
+                        copy.skipped++;
+                        continue;
+                    }
+
+                    rows.add(row);
+                }
+            }
+        }
+
+        if (read == 0) {
+            return false;
+        }
+
+        this.insert(conn, copy.insert(), rows);
+        copy.copied += rows.size();
+        copy.last = next;
+        return true;
+    }
+
+    /**
+     * Copy again the rows written since the copy started, then replace the old table with the copy
+     */
+    private void finish(Connection conn, ETable table, Copy copy) throws SQLException {
+        String name = table.getName();
+        ETable typed = copy.typed;
+
+        Set<String> touched = new HashSet<>(copy.replaced);
+        copy.removed.forEach((key, values) -> {
+            if (key.equals("id")) {
+                touched.addAll(values);
+            }
+        });
+
+        for (Map.Entry<String, Set<String>> entry : copy.removed.entrySet()) {
+            if (!entry.getKey().equals("id")) {
+                this.delete(conn, typed, entry.getKey(), entry.getValue());
+            }
+        }
+        this.delete(conn, typed, "id", touched);
+
+        List<Object[]> rows = new ArrayList<>();
+        try (PreparedStatement statement = conn.prepareStatement(String.format("SELECT %s FROM %s WHERE id = ?;", copy.names(), name))) {
+            for (String id : touched) {
+                statement.setString(1, id);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        Object[] row = this.convert(typed, copy.columns, resultSet);
+                        if (row != null) {
+                            rows.add(row);
+                        }
+                    }
+                }
+            }
+        }
+        this.insert(conn, copy.insert(), rows);
+
+        this.execute(conn, String.format("DROP TABLE %s;", name));
+        this.execute(conn, String.format("ALTER TABLE %s RENAME TO %s;", typed.getName(), name));
+
+        table.setUUIDColumns(uuidColumns.get(table));
+        table.setTrigger(copy.previous);
+        table.restore();
+
+        logger.info(String.format("TypedColumnsMigration: migrated %d rows of %s in %d ms, %d skipped, %d written during the copy",
+                copy.copied, name, System.currentTimeMillis() - copy.start, copy.skipped, touched.size()));
+    }
+
+    private void delete(Connection conn, ETable typed, String key, Set<String> values) throws SQLException {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement statement = conn.prepareStatement(String.format("DELETE FROM %s WHERE `%s` = ?;", typed.getName(), key))) {
+            for (String value : values) {
+                statement.setObject(1, typed.toColumn(key, value));
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        }
+    }
+
+    private Object[] convert(ETable typed, List<Column> columns, ResultSet resultSet) throws SQLException {
+        Object[] row = new Object[columns.size()];
+
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            Object value = resultSet.getObject(column.getName());
+
+            if (value != null && typed.getUUIDColumns().contains(column.getName())) {
+                try {
+                    value = UUIDs.toBytes(UUID.fromString(value.toString().trim()));
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            } else if (value instanceof String && column.getType().toUpperCase(Locale.ROOT).startsWith("BIGINT")) {
+                try {
+                    value = Long.parseLong(((String) value).trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+
+            row[i] = value;
+        }
+
+        return row;
+    }
+
+    private void insert(Connection conn, String query, List<Object[]> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+
+        try (PreparedStatement statement = conn.prepareStatement(query)) {
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    statement.setObject(i + 1, row[i]);
+                }
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+            conn.commit();
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * @return Columns of the new layout that the old table has too
+     */
+    private List<Column> shared(Connection conn, ETable table) throws SQLException {
+        List<Column> columns = new ArrayList<>();
+
+        for (Column column : table.getColumns()) {
+            try (ResultSet resultSet = conn.getMetaData().getColumns(conn.getCatalog(), null, table.getName(), column.getName())) {
+                if (resultSet.next()) {
+                    columns.add(column);
+                }
+            }
+        }
+
+        return columns;
+    }
+
+    /**
+     * @param name Name of the table
+     * @return true if the id column of the table is stored as text
+     * @throws SQLException if something goes wrong
+     */
+    public static boolean isLegacy(Connection conn, String name) throws SQLException {
+        try (ResultSet resultSet = conn.getMetaData().getColumns(conn.getCatalog(), null, name, "id")) {
+            if (!resultSet.next()) {
+                return false;
+            }
+
+            String type = resultSet.getString("TYPE_NAME").toUpperCase(Locale.ROOT);
+            return type.contains("TEXT") || type.contains("CHAR");
+        }
+    }
+
+    private boolean exists(Connection conn, String name) throws SQLException {
+        try (ResultSet resultSet = conn.getMetaData().getTables(conn.getCatalog(), null, name, new String[]{"TABLE"})) {
+            while (resultSet.next()) {
+                if (name.equalsIgnoreCase(resultSet.getString("TABLE_NAME"))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void execute(Connection conn, String query) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.executeUpdate(query);
+        }
+    }
+
+    /**
+     * A table being copied, records the rows written to the old table meanwhile
+     */
+    private static class Copy implements TableTrigger {
+        private final String name;
+        private final ETable typed;
+        private final List<Column> columns;
+        private final TableTrigger previous;
+        private final long start = System.currentTimeMillis();
+        private final Set<String> replaced = new HashSet<>();
+        private final Map<String, Set<String>> removed = new HashMap<>();
+        private String last = "";
+        private long copied;
+        private long skipped;
+
+        private Copy(String name, ETable typed, List<Column> columns, TableTrigger previous) {
+            this.name = name;
+            this.typed = typed;
+            this.columns = columns;
+            this.previous = previous;
+        }
+
+        private String names() {
+            List<String> names = new ArrayList<>();
+            for (Column column : columns) {
+                names.add("`" + column.getName() + "`");
+            }
+
+            return String.join(", ", names);
+        }
+
+        private String insert() {
+            return String.format("INSERT INTO %s (%s) VALUES (%s);", typed.getName(), this.names(), String.join(",", Collections.nCopies(columns.size(), "?")));
+        }
+
+        @Override
+        public void replacing(Connection conn, ETable table, List<Map<String, Object>> rows) throws SQLException {
+            for (Map<String, Object> row : rows) {
+                replaced.add(String.valueOf(row.get("id")));
+            }
+
+            if (previous != null) {
+                previous.replacing(conn, table, rows);
+            }
+        }
+
+        @Override
+        public void removing(Connection conn, ETable table, String key, List<Object> values) throws SQLException {
+            Set<String> keys = removed.computeIfAbsent(key, k -> new HashSet<>());
+            for (Object value : values) {
+                keys.add(String.valueOf(value));
+            }
+
+            if (previous != null) {
+                previous.removing(conn, table, key, values);
+            }
+        }
+    }
+}
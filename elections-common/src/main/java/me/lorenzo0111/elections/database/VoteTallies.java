@@ -0,0 +1,235 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.lorenzo0111.elections.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the vote_tallies table, the vote count of every party by election, in step with the votes table.
+ * The counters are updated in the transaction that writes the votes, so they are never ahead or behind it.
+ */
+public class VoteTallies implements TableTrigger {
+    private static final int CHUNK = 500;
+
+    private final Logger logger;
+    private final ETable votes;
+    private final ETable tallies;
+
+    /**
+     * @param votes Table with the id, electionId and party columns
+     * @param tallies Table with the electionId, partyId and count columns
+     */
+    public VoteTallies(Logger logger, ETable votes, ETable tallies) {
+        this.logger = logger;
+        this.votes = votes;
+        this.tallies = tallies;
+    }
+
+    @Override
+    public void replacing(Connection conn, ETable table, List<Map<String, Object>> rows) throws SQLException {
+        List<Object> ids = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            ids.add(row.get("id"));
+        }
+
+        // a replaced vote no longer counts for the party it had
+        Map<UUID, Map<UUID, Integer>> delta = this.previous(conn, ids);
+
+        for (Map<String, Object> row : rows) {
+            add(delta, uuid(row.get("electionId")), uuid(row.get("party")), 1);
+        }
+
+        this.apply(conn, delta);
+    }
+
+    @Override
+    public void removing(Connection conn, ETable table, String key, List<Object> values) throws SQLException {
+        if (!key.equals("id")) {
+            throw new SQLException("VoteTallies: votes can only be removed by id");
+        }
+
+        this.apply(conn, this.previous(conn, values));
+    }
+
+    /**
+     * Compare the counters against a count of the votes, fixing the ones that differ
+     * @return A completable future with the number of counters fixed, or null if they couldn't be checked
+     */
+    public CompletableFuture<Integer> reconcile() {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        votes.run(() -> {
+            try {
+                future.complete(this.reconcileNow());
+            } catch (SQLException e) {
+                e.printStackTrace();
+                future.complete(null);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Compare the counters against a count of the votes, fixing the ones that differ — Doesn't return until they are fixed.
+     * @return Number of counters fixed
+     * @throws SQLException if something goes wrong
+     */
+    public int reconcileNow() throws SQLException {
+        int[] fixed = {0};
+
+        tallies.transaction(transaction -> {
+            Map<UUID, Map<UUID, Integer>> expected = this.count(transaction, String.format("SELECT electionId, party, COUNT(*) AS votes FROM %s GROUP BY electionId, party;", votes.getName()));
+            Map<UUID, Map<UUID, Integer>> actual = this.count(transaction, String.format("SELECT electionId, partyId AS party, `count` AS votes FROM %s;", tallies.getName()));
+
+            // counters without votes go back to zero
+            Map<UUID, Map<UUID, Integer>> wrong = new HashMap<>();
+            actual.forEach((electionId, parties) -> parties.forEach((partyId, count) -> add(wrong, electionId, partyId, 0)));
+            expected.forEach((electionId, parties) -> parties.forEach((partyId, count) -> add(wrong, electionId, partyId, count)));
+
+            for (Map.Entry<UUID, Map<UUID, Integer>> election : wrong.entrySet()) {
+                Map<UUID, Integer> counted = actual.getOrDefault(election.getKey(), Collections.emptyMap());
+                election.getValue().entrySet().removeIf(party -> party.getValue().equals(counted.get(party.getKey())));
+                fixed[0] += election.getValue().size();
+            }
+
+            // the counts are absolute, so servers reconciling at the same time can't add the same fix twice
+            this.set(transaction, wrong);
+        });
+
+        if (fixed[0] > 0) {
+            logger.warning(String.format("VoteTallies: fixed %d vote counters that did not match the votes", fixed[0]));
+        }
+
+        return fixed[0];
+    }
+
+    /**
+     * @return Negative counts of the votes that currently have these ids
+     */
+    private Map<UUID, Map<UUID, Integer>> previous(Connection conn, List<Object> ids) throws SQLException {
+        Map<UUID, Map<UUID, Integer>> delta = new HashMap<>();
+
+        for (int from = 0; from < ids.size(); from += CHUNK) {
+            List<Object> chunk = ids.subList(from, Math.min(ids.size(), from + CHUNK));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+
+            try (PreparedStatement statement = conn.prepareStatement(String.format("SELECT electionId, party FROM %s WHERE id IN (%s);", votes.getName(), placeholders))) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    statement.setObject(i + 1, votes.toColumn("id", chunk.get(i)));
+                }
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        add(delta, UUIDs.read(resultSet, "electionId"), UUIDs.read(resultSet, "party"), -1);
+                    }
+                }
+            }
+        }
+
+        return delta;
+    }
+
+    private void apply(Connection conn, Map<UUID, Map<UUID, Integer>> delta) throws SQLException {
+        this.write(conn, delta, false);
+    }
+
+    private void set(Connection conn, Map<UUID, Map<UUID, Integer>> counts) throws SQLException {
+        this.write(conn, counts, true);
+    }
+
+    /**
+     * @param absolute Whether the values replace the counters, otherwise they are added to them
+     */
+    private void write(Connection conn, Map<UUID, Map<UUID, Integer>> values, boolean absolute) throws SQLException {
+        String update = String.format(absolute
+                ? "UPDATE %s SET `count` = ? WHERE electionId = ? AND partyId = ?;"
+                : "UPDATE %s SET `count` = `count` + ? WHERE electionId = ? AND partyId = ?;", tallies.getName());
+        String insert = String.format("INSERT INTO %s (electionId, partyId, `count`) VALUES (?,?,?);", tallies.getName());
+
+        for (Map.Entry<UUID, Map<UUID, Integer>> election : values.entrySet()) {
+            Object electionId = tallies.toColumn("electionId", election.getKey());
+
+            for (Map.Entry<UUID, Integer> party : election.getValue().entrySet()) {
+                if (!absolute && party.getValue() == 0) {
+                    continue;
+                }
+
+                Object partyId = tallies.toColumn("partyId", party.getKey());
+
+                try (PreparedStatement statement = conn.prepareStatement(update)) {
+                    statement.setInt(1, party.getValue());
+                    statement.setObject(2, electionId);
+                    statement.setObject(3, partyId);
+
+                    if (statement.executeUpdate() > 0) {
+                        continue;
+                    }
+                }
+
+                try (PreparedStatement statement = conn.prepareStatement(insert)) {
+                    statement.setObject(1, electionId);
+                    statement.setObject(2, partyId);
+                    statement.setInt(3, party.getValue());
+                    statement.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private Map<UUID, Map<UUID, Integer>> count(Connection conn, String query) throws SQLException {
+        Map<UUID, Map<UUID, Integer>> counts = new HashMap<>();
+
+        try (PreparedStatement statement = conn.prepareStatement(query);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                add(counts, UUIDs.read(resultSet, "electionId"), UUIDs.read(resultSet, "party"), resultSet.getInt("votes"));
+            }
+        }
+
+        return counts;
+    }
+
+    private static void add(Map<UUID, Map<UUID, Integer>> counts, UUID electionId, UUID partyId, int n) {
+        counts.computeIfAbsent(electionId, id -> new HashMap<>()).merge(partyId, n, Integer::sum);
+    }
+
+    private static UUID uuid(Object value) {
+        return value instanceof UUID ? (UUID) value : UUID.fromString(Objects.toString(value));
+    }
+}
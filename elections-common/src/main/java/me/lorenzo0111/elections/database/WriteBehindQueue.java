@@ -0,0 +1,260 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.database;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind queue keyed by table and entity id.
+ * A write replaces the one still queued for the same entity, so a burst of changes costs one row per entity.
+ * Queued writes are drained as one batch per table on the executor; with a single threaded executor
+ * the batches of a drain always land before the ones of the next drain, which keeps the order per entity.
+ * The queue depth can never exceed the number of distinct entities written since the last drain.
+ */
+public class WriteBehindQueue {
+    private final Logger logger;
+    private final Executor executor;
+    private final int warningDepth;
+
+    private final Map<String, PendingWrite> pending = new LinkedHashMap<>();
+    private boolean scheduled;
+    private volatile Listener listener;
+
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * @param warningDepth Queue depth that triggers a backpressure warning
+     */
+    public WriteBehindQueue(Logger logger, Executor executor, int warningDepth) {
+        this.logger = logger;
+        this.executor = executor;
+        this.warningDepth = warningDepth;
+    }
+
+    /**
+     * @param listener Called on the executor with the ids of every batch the database committed
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public CompletableFuture<Boolean> update(ETable table, EDatabaseSerializable entry) {
+        return this.enqueue(table, entry, false);
+    }
+
+    public CompletableFuture<Boolean> delete(ETable table, EDatabaseSerializable entry) {
+        return this.enqueue(table, entry, true);
+    }
+
+    /**
+     * Drain everything queued so far
+     * @return A completable future with true once every queued write has been written
+     */
+    public CompletableFuture<Boolean> flush() {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        executor.execute(() -> this.drain().whenComplete((success, error) -> future.complete(error == null && success)));
+
+        return future;
+    }
+
+    private CompletableFuture<Boolean> enqueue(ETable table, EDatabaseSerializable entry, boolean delete) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        Object id = entry.serialize().get("id");
+        String key = table.getName() + ":" + id;
+
+        boolean schedule;
+        int depth;
+
+        synchronized (pending) {
+            PendingWrite write = pending.get(key);
+            if (write == null) {
+                write = new PendingWrite(table, id, System.nanoTime());
+                pending.put(key, write);
+            } else {
+                coalesced.incrementAndGet();
+            }
+
+            write.entry = entry;
+            write.delete = delete;
+            write.futures.add(future);
+
+            schedule = !scheduled;
+            scheduled = true;
+            depth = pending.size();
+        }
+
+        if (depth == warningDepth) {
+            logger.warning(String.format("WriteBehindQueue: %d writes are waiting for the database", depth));
+        }
+
+        if (schedule) {
+            executor.execute(this::drain);
+        }
+
+        return future;
+    }
+
+    private CompletableFuture<Boolean> drain() {
+        List<PendingWrite> writes;
+
+        synchronized (pending) {
+            writes = new ArrayList<>(pending.values());
+            pending.clear();
+            scheduled = false;
+        }
+
+        Map<ETable, List<PendingWrite>> updates = new LinkedHashMap<>();
+        Map<ETable, List<PendingWrite>> deletes = new LinkedHashMap<>();
+        for (PendingWrite write : writes) {
+            (write.delete ? deletes : updates).computeIfAbsent(write.table, table -> new ArrayList<>()).add(write);
+        }
+
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+        deletes.forEach((table, batch) -> {
+            List<Object> ids = new ArrayList<>();
+            batch.forEach(write -> ids.add(write.id));
+            futures.add(this.complete(table, batch, table.removeAll("id", ids)));
+        });
+
+        updates.forEach((table, batch) -> {
+            List<EDatabaseSerializable> entries = new ArrayList<>();
+            batch.forEach(write -> entries.add(write.entry));
+            futures.add(this.complete(table, batch, table.addOrReplaceAll(entries)));
+        });
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .thenApply(ignored -> futures.stream().allMatch(CompletableFuture::join));
+    }
+
+    private CompletableFuture<Boolean> complete(ETable table, List<PendingWrite> batch, CompletableFuture<Boolean> result) {
+        batches.incrementAndGet();
+
+        return result.whenComplete((success, error) -> {
+            boolean ok = error == null && success;
+            long now = System.nanoTime();
+
+            for (PendingWrite write : batch) {
+                long latency = now - write.queuedAt;
+                totalLatency.addAndGet(latency);
+                maxLatency.accumulateAndGet(latency, Math::max);
+                (ok ? written : failed).incrementAndGet();
+
+                write.futures.forEach(future -> future.complete(ok));
+            }
+
+            Listener current = listener;
+            if (ok && current != null) {
+                List<Object> ids = new ArrayList<>();
+                batch.forEach(write -> ids.add(write.id));
+                current.committed(table, ids);
+            }
+        });
+    }
+
+    /**
+     * @return Number of entities waiting to be written
+     */
+    public int getQueueDepth() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return Number of writes that replaced a queued one instead of costing a row
+     */
+    public long getCoalescedWrites() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return Number of rows written or deleted
+     */
+    public long getWrittenRows() {
+        return written.get();
+    }
+
+    /**
+     * @return Number of rows whose batch failed
+     */
+    public long getFailedRows() {
+        return failed.get();
+    }
+
+    /**
+     * @return Number of batches sent to the database
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * @return Average time between queueing a write and the database confirming it, in milliseconds
+     */
+    public double getAverageLatency() {
+        long rows = written.get() + failed.get();
+        return rows == 0 ? 0 : totalLatency.get() / 1_000_000.0 / rows;
+    }
+
+    /**
+     * @return Longest time between queueing a write and the database confirming it, in milliseconds
+     */
+    public double getMaxLatency() {
+        return maxLatency.get() / 1_000_000.0;
+    }
+
+    public interface Listener {
+        void committed(ETable table, List<Object> ids);
+    }
+
+    private static class PendingWrite {
+        private final ETable table;
+        private final Object id;
+        private final long queuedAt;
+        private final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        private EDatabaseSerializable entry;
+        private boolean delete;
+
+        private PendingWrite(ETable table, Object id, long queuedAt) {
+            this.table = table;
+            this.id = id;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.sync;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Tells the other servers that an entry has been written or removed
+ */
+public class ChangeNotification {
+    private final String origin;
+    private final String table;
+    private final UUID id;
+    private final long version;
+
+    /**
+     * @param origin Id of the server that made the change
+     * @param table Table of the entry
+     * @param id Id of the entry
+     * @param version Time the database committed the change, in milliseconds
+     */
+    public ChangeNotification(String origin, String table, UUID id, long version) {
+        this.origin = origin;
+        this.table = table;
+        this.id = id;
+        this.version = version;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Bytes needed to send this notification: both strings, the id and the version
+     */
+    public int size() {
+        return origin.getBytes(StandardCharsets.UTF_8).length + table.getBytes(StandardCharsets.UTF_8).length + 16 + 8;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        ChangeNotification that = (ChangeNotification) o;
+        return version == that.version && Objects.equals(origin, that.origin) && Objects.equals(table, that.table) && Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(origin, table, id, version);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.sync;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link ChangeNotification}s between the servers that share a database
+ */
+public interface ChangeTransport {
+    /**
+     * Send notifications to every other server
+     * @param notifications Notifications to send
+     */
+    void publish(List<ChangeNotification> notifications);
+
+    /**
+     * @param subscriber Receives the notifications sent by the other servers
+     */
+    void subscribe(Consumer<List<ChangeNotification>> subscriber);
+
+    /**
+     * Check for new notifications, called periodically by transports that can't push them
+     */
+    default void poll() {
+    }
+
+    default void close() {
+    }
+}
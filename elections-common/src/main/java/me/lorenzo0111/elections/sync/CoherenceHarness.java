@@ -0,0 +1,156 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.sync;
+
+import me.lorenzo0111.elections.api.objects.Vote;
+import me.lorenzo0111.elections.cache.CacheManager;
+import me.lorenzo0111.elections.constants.Getters;
+import me.lorenzo0111.elections.database.DatabaseManager;
+import me.lorenzo0111.elections.scheduler.IAdvancedScheduler;
+import me.lorenzo0111.pluginslib.database.connection.SQLiteConnection;
+import org.spongepowered.configurate.CommentedConfigurationNode;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Starts several caches in one JVM, kept coherent over a {@link LoopbackTransport} and one SQLite database,
+ * then writes votes on each of them and reports the convergence time and the bytes sent per change.
+ * <p>
+ * Usage: {@code CoherenceHarness [instances] [votes]}
+ */
+public class CoherenceHarness {
+    private static final long TIMEOUT_MS = TimeUnit.MINUTES.toMillis(1);
+
+    public static void main(String[] args) throws Exception {
+        int nInstances = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int nVotes = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        Logger logger = Logger.getLogger("CoherenceHarness");
+        Path directory = Files.createTempDirectory("elections-harness");
+        HarnessScheduler scheduler = new HarnessScheduler();
+
+        List<CacheManager> caches = new ArrayList<>();
+        for (int i = 0; i < nInstances; i++) {
+            caches.add(new CacheManager(logger, () -> {}));
+        }
+
+        // the database loads and resyncs a cache of its own, the instances only learn about the votes through the transport
+        DatabaseManager database = new DatabaseManager(logger, scheduler, new CacheManager(logger, () -> {}), CommentedConfigurationNode.root(), new SQLiteConnection(directory));
+        Getters.database(database);
+        // the first read waits for the tables to be created
+        database.getVotes().get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        List<CoherenceService> services = new ArrayList<>();
+        LoopbackTransport network = null;
+        for (int i = 0; i < nInstances; i++) {
+            String origin = "instance-" + i;
+            LoopbackTransport transport = network == null ? (network = new LoopbackTransport(origin)) : network.join(origin);
+            services.add(new CoherenceService(logger, scheduler, database, caches.get(i), transport, origin));
+        }
+
+        UUID electionId = UUID.randomUUID();
+        UUID partyId = UUID.randomUUID();
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < nVotes; i++) {
+            int writer = i % nInstances;
+            Vote vote = new Vote(UUID.randomUUID(), UUID.randomUUID(), partyId, electionId, true);
+
+            scheduler.sync(() -> caches.get(writer).getVotes().add(vote.getId(), vote));
+            database.updateVote(vote).thenAccept(success -> {
+                if (success) {
+                    services.get(writer).committed(vote.tableName(), Collections.singletonList(vote.getId()));
+                }
+            });
+        }
+
+        boolean converged = false;
+        while (!converged && System.currentTimeMillis() - start < TIMEOUT_MS) {
+            Thread.sleep(10);
+            converged = caches.stream().allMatch(cache -> cache.getVotes().size() == nVotes);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        logger.info(String.format("%d instances, %d votes: %s in %d ms", nInstances, nVotes, converged ? "converged" : "NOT converged", elapsed));
+        for (int i = 0; i < nInstances; i++) {
+            CoherenceService service = services.get(i);
+            logger.info(String.format("%s: %d votes cached, published %d (%.1f bytes per change), received %d, applied %d, convergence avg %.1f ms, max %d ms",
+                    service.getOrigin(), caches.get(i).getVotes().size(), service.getPublished(), service.getBytesPerChange(), service.getReceived(),
+                    service.getApplied(), service.getAverageConvergence(), service.getMaxConvergence()));
+        }
+
+        services.forEach(CoherenceService::close);
+        database.closeConnection();
+        scheduler.shutdown();
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+
+        if (!converged) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * One thread stands for the server main thread, the async tasks get a pool of their own
+     */
+    private static class HarnessScheduler implements IAdvancedScheduler {
+        private final ScheduledExecutorService main = Executors.newSingleThreadScheduledExecutor();
+        private final ExecutorService async = Executors.newCachedThreadPool();
+
+        @Override
+        public void async(Runnable runnable) {
+            async.execute(runnable);
+        }
+
+        @Override
+        public void sync(Runnable runnable) {
+            main.execute(runnable);
+        }
+
+        @Override
+        public void repeating(Runnable runnable, long delayTicks, int time, TimeUnit unit) {
+            main.scheduleAtFixedRate(runnable, delayTicks * 50L, unit.toMillis(time), TimeUnit.MILLISECONDS);
+        }
+
+        private void shutdown() {
+            main.shutdownNow();
+            async.shutdownNow();
+        }
+    }
+}
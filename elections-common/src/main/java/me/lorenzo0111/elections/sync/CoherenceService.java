@@ -0,0 +1,202 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.sync;
+
+import me.lorenzo0111.elections.cache.CacheManager;
+import me.lorenzo0111.elections.database.ETable;
+import me.lorenzo0111.elections.database.IDatabaseManager;
+import me.lorenzo0111.elections.scheduler.IAdvancedScheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the caches of several servers sharing one database coherent.
+ * Every committed write is announced through a {@link ChangeTransport}; the peers fetch only the announced entries
+ * and merge them into their cache.
+ */
+public class CoherenceService {
+    private final Logger logger;
+    private final IAdvancedScheduler scheduler;
+    private final IDatabaseManager database;
+    private final CacheManager cache;
+    private final ChangeTransport transport;
+    private final String origin;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong publishedBytes = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong totalConvergence = new AtomicLong();
+    private final AtomicLong maxConvergence = new AtomicLong();
+
+    /**
+     * @param origin Id of this server, the same the transport uses to skip its own notifications
+     */
+    public CoherenceService(Logger logger, IAdvancedScheduler scheduler, IDatabaseManager database, CacheManager cache, ChangeTransport transport, String origin) {
+        this.logger = logger;
+        this.origin = origin;
+        this.scheduler = scheduler;
+        this.database = database;
+        this.cache = cache;
+        this.transport = transport;
+
+        transport.subscribe(this::received);
+    }
+
+    /**
+     * Start polling the transport
+     * @param seconds Seconds between two polls
+     */
+    public void start(int seconds) {
+        scheduler.repeating(transport::poll, seconds * 20L, seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Announce a batch committed by the database
+     * @param table Table of the batch
+     * @param ids Ids of the written or removed rows
+     */
+    public void committed(ETable table, List<Object> ids) {
+        this.committed(table.getName(), ids);
+    }
+
+    /**
+     * Announce a batch committed by the database
+     * @param table Name of the table of the batch
+     * @param ids Ids of the written or removed rows
+     */
+    public void committed(String table, List<Object> ids) {
+        long version = System.currentTimeMillis();
+
+        List<ChangeNotification> notifications = new ArrayList<>();
+        for (Object id : ids) {
+            ChangeNotification notification = new ChangeNotification(origin, table, UUID.fromString(String.valueOf(id)), version);
+            notifications.add(notification);
+            publishedBytes.addAndGet(notification.size());
+        }
+
+        published.addAndGet(notifications.size());
+        transport.publish(notifications);
+    }
+
+    private void received(List<ChangeNotification> notifications) {
+        received.addAndGet(notifications.size());
+
+        Map<String, Set<UUID>> ids = new HashMap<>();
+        for (ChangeNotification notification : notifications) {
+            ids.computeIfAbsent(notification.getTable(), table -> new HashSet<>()).add(notification.getId());
+        }
+
+        database.getChanges(ids)
+                .thenAccept(changes -> {
+                    if (changes == null) {
+                        // the periodic resync picks these rows up
+                        logger.warning(String.format("CoherenceService: unable to fetch %d changes made by other servers", notifications.size()));
+                        return;
+                    }
+
+                    scheduler.sync(() -> {
+                        int nChanges = cache.merge(changes);
+
+                        long now = System.currentTimeMillis();
+                        for (ChangeNotification notification : notifications) {
+                            long convergence = Math.max(0, now - notification.getVersion());
+                            totalConvergence.addAndGet(convergence);
+                            maxConvergence.accumulateAndGet(convergence, Math::max);
+                        }
+                        applied.addAndGet(notifications.size());
+
+                        if (nChanges > 0) {
+                            logger.fine(String.format("CoherenceService: merged %d changes made by other servers", nChanges));
+                            cache.getEventHandler().onCacheSynced();
+                        }
+                    });
+                });
+    }
+
+    public void close() {
+        transport.close();
+    }
+
+    /**
+     * @return Id of this server in the notifications
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * @return Number of notifications sent
+     */
+    public long getPublished() {
+        return published.get();
+    }
+
+    /**
+     * @return Average bytes sent per change
+     */
+    public double getBytesPerChange() {
+        long count = published.get();
+        return count == 0 ? 0 : (double) publishedBytes.get() / count;
+    }
+
+    /**
+     * @return Number of notifications received from other servers
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * @return Number of received notifications merged into the cache
+     */
+    public long getApplied() {
+        return applied.get();
+    }
+
+    /**
+     * @return Average time between the commit on another server and the merge here, in milliseconds
+     */
+    public double getAverageConvergence() {
+        long count = applied.get();
+        return count == 0 ? 0 : (double) totalConvergence.get() / count;
+    }
+
+    /**
+     * @return Longest time between the commit on another server and the merge here, in milliseconds
+     */
+    public long getMaxConvergence() {
+        return maxConvergence.get();
+    }
+}
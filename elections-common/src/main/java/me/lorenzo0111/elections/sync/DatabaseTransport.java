@@ -0,0 +1,148 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.sync;
+
+import me.lorenzo0111.elections.database.ETable;
+import me.lorenzo0111.elections.database.UUIDs;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Transport that stores the notifications in a table of the shared database, polled by every server
+ */
+public class DatabaseTransport implements ChangeTransport {
+    // versions come from the clock of the publishing server and rows can commit late, so every poll looks back a bit
+    private static final long OVERLAP_MS = 10000L;
+    private static final long RETENTION_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final ETable table;
+    private final String origin;
+    private final List<Consumer<List<ChangeNotification>>> subscribers = new CopyOnWriteArrayList<>();
+    private final Map<ChangeNotification, Long> seen = new ConcurrentHashMap<>();
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private volatile long since = System.currentTimeMillis();
+    private long lastPurge;
+
+    /**
+     * @param table Table with the origin, tbl, id and version columns
+     * @param origin Id of this server, its own notifications are ignored
+     */
+    public DatabaseTransport(ETable table, String origin) {
+        this.table = table;
+        this.origin = origin;
+    }
+
+    @Override
+    public void publish(List<ChangeNotification> notifications) {
+        table.run(() -> {
+            try (ETable.Lease lease = table.lease();
+                 PreparedStatement statement = lease.get().prepareStatement(String.format("INSERT INTO %s (origin, tbl, id, version) VALUES (?,?,?,?);", table.getName()))) {
+                for (ChangeNotification notification : notifications) {
+                    statement.setString(1, notification.getOrigin());
+                    statement.setString(2, notification.getTable());
+                    statement.setObject(3, table.toColumn("id", notification.getId()));
+                    statement.setLong(4, notification.getVersion());
+                    statement.addBatch();
+                }
+
+                statement.executeBatch();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(Consumer<List<ChangeNotification>> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    @Override
+    public void poll() {
+        if (!polling.compareAndSet(false, true)) {
+            return;
+        }
+
+        table.run(() -> {
+            try (ETable.Lease lease = table.lease()) {
+                Connection conn = lease.get();
+                long from = since - OVERLAP_MS;
+                List<ChangeNotification> received = new ArrayList<>();
+
+                try (PreparedStatement statement = conn.prepareStatement(String.format("SELECT * FROM %s WHERE version >= ? AND origin <> ?;", table.getName()))) {
+                    statement.setLong(1, from);
+                    statement.setString(2, origin);
+
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            ChangeNotification notification = new ChangeNotification(
+                                    resultSet.getString("origin"),
+                                    resultSet.getString("tbl"),
+                                    UUIDs.read(resultSet, "id"),
+                                    resultSet.getLong("version"));
+
+                            since = Math.max(since, notification.getVersion());
+                            if (seen.putIfAbsent(notification, notification.getVersion()) == null) {
+                                received.add(notification);
+                            }
+                        }
+                    }
+                }
+
+                // older notifications can't be read again, the window only moves forward
+                seen.values().removeIf(version -> version < from);
+
+                long now = System.currentTimeMillis();
+                if (now - lastPurge > TimeUnit.MINUTES.toMillis(1)) {
+                    lastPurge = now;
+
+                    try (PreparedStatement statement = conn.prepareStatement(String.format("DELETE FROM %s WHERE version < ?;", table.getName()))) {
+                        statement.setLong(1, now - RETENTION_MS);
+                        statement.executeUpdate();
+                    }
+                }
+
+                if (!received.isEmpty()) {
+                    subscribers.forEach(subscriber -> subscriber.accept(received));
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                polling.set(false);
+            }
+        });
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process transport: delivers the notifications to the other transports of the same network right away.
+ * Useful to run several instances in one JVM.
+ */
+public class LoopbackTransport implements ChangeTransport {
+    private final String origin;
+    private final List<LoopbackTransport> network;
+    private final List<Consumer<List<ChangeNotification>>> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Create the first transport of a new network
+     * @param origin Id of the server using this transport
+     */
+    public LoopbackTransport(String origin) {
+        this(origin, new CopyOnWriteArrayList<>());
+    }
+
+    private LoopbackTransport(String origin, List<LoopbackTransport> network) {
+        this.origin = origin;
+        this.network = network;
+        this.network.add(this);
+    }
+
+    /**
+     * Create another transport on the same network
+     * @param origin Id of the server using the new transport
+     * @return The new transport
+     */
+    public LoopbackTransport join(String origin) {
+        return new LoopbackTransport(origin, network);
+    }
+
+    @Override
+    public void publish(List<ChangeNotification> notifications) {
+        for (LoopbackTransport peer : network) {
+            if (peer == this) {
+                continue;
+            }
+
+            List<ChangeNotification> received = new ArrayList<>();
+            for (ChangeNotification notification : notifications) {
+                if (!notification.getOrigin().equals(peer.origin)) {
+                    received.add(notification);
+                }
+            }
+
+            if (!received.isEmpty()) {
+                peer.subscribers.forEach(subscriber -> subscriber.accept(received));
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<List<ChangeNotification>> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    @Override
+    public void close() {
+        network.remove(this);
+    }
+}
@@ -24,13 +24,26 @@
 
 package me.lorenzo0111.elections.tasks;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
+import me.lorenzo0111.elections.api.objects.Cache;
+import me.lorenzo0111.elections.api.objects.DBHologram;
+import me.lorenzo0111.elections.api.objects.EClaim;
+import me.lorenzo0111.elections.api.objects.Election;
+import me.lorenzo0111.elections.api.objects.ElectionBlock;
+import me.lorenzo0111.elections.api.objects.ICacheEntry;
+import me.lorenzo0111.elections.api.objects.Party;
+import me.lorenzo0111.elections.api.objects.Vote;
 import me.lorenzo0111.elections.cache.CacheManager;
 import me.lorenzo0111.elections.database.IDatabaseManager;
+import me.lorenzo0111.elections.database.RowReader;
 import me.lorenzo0111.elections.scheduler.IAdvancedScheduler;
 
 public class CacheTask implements Runnable {
@@ -38,84 +51,104 @@ public class CacheTask implements Runnable {
     private final IAdvancedScheduler scheduler;
     private final IDatabaseManager database;
     private final CacheManager cache;
+    private final long resyncSeconds;
 
-    public CacheTask(Logger logger, IAdvancedScheduler scheduler, IDatabaseManager database, CacheManager cache) {
+    /**
+     * @param resyncSeconds Seconds between two incremental syncs with the database
+     */
+    public CacheTask(Logger logger, IAdvancedScheduler scheduler, IDatabaseManager database, CacheManager cache, long resyncSeconds) {
         this.logger = logger;
         this.scheduler = scheduler;
         this.database = database;
         this.cache = cache;
+        this.resyncSeconds = resyncSeconds;
     }
 
     @Override
     public void run() {
         long start = System.currentTimeMillis();
 
-        int nCompletions = 6;
-        AtomicInteger completions = new AtomicInteger(0);
-        CompletableFuture<Boolean> reloaded = new CompletableFuture<Boolean>();
-
-        database.getVotes()
-                .thenAccept((votes) -> {
-                    cache.getVotes().reset();
-                    votes.forEach(vote -> cache.getVotes().add(vote.getId(), vote));
-                    if(completions.addAndGet(1) == nCompletions) {
-                        reloaded.complete(true);
-                    }
-                });
-
-        database.getParties()
-                .thenAccept((parties) -> {
-                    cache.getParties().reset();
-                    parties.values().forEach(party -> cache.getParties().add(party.getId(), party));
-                    if(completions.addAndGet(1) == nCompletions) {
-                        reloaded.complete(true);
+        // closed elections only keep their results, their votes are loaded when they are asked for
+        CompletableFuture<Void> votes = database.getClosedTallies()
+                .thenCompose((summaries) -> {
+                    if (summaries == null) {
+                        logger.warning("CacheTask: unable to count the votes of the closed elections, loading all of them");
+                        return this.load("votes", Vote::fromResultSet, cache.getVotes(), Vote::getId);
                     }
-                });
-
-        database.getElections()
-                .thenAccept((elections) -> {
-                    cache.getElections().reset();
-                    elections.values().forEach(election -> cache.getElections().add(election.getId(), election));
-                    if(completions.addAndGet(1) == nCompletions) {
-                        reloaded.complete(true);
-                    }
-                });
 
-        database.getBlocks()
-                .thenAccept((blocks) -> {
-                    cache.getBlocks().reset();
-                    blocks.forEach(block -> cache.getBlocks().add(block.getId(), block));
-                    if(completions.addAndGet(1) == nCompletions) {
-                        reloaded.complete(true);
+                    logger.info(String.format("CacheTask: %d closed elections kept as vote summaries", summaries.size()));
+                    return this.load("votes", database::streamResidentVotes, (generation) -> cache.getVotes().load(generation, summaries), Vote::getId);
+                })
+                .thenCompose((ignored) -> cache.getVotes().replay(scheduler::sync))
+                .thenAccept((replayed) -> {
+                    if (replayed > 0) {
+                        logger.info(String.format("CacheTask: replayed %d vote changes from the journal", replayed));
                     }
                 });
 
-        database.getHolograms()
-                .thenAccept((holograms) -> {
-                    cache.getHolograms().reset();
-                    holograms.values().forEach(hologram -> cache.getHolograms().add(hologram.getId(), hologram));
-                    if(completions.addAndGet(1) == nCompletions) {
-                        reloaded.complete(true);
-                    }
-                });
+        CompletableFuture<Boolean> reloaded = CompletableFuture.allOf(
+                votes,
+                this.load("parties", Party::fromResultSet, cache.getParties(), Party::getId),
+                this.load("elections", Election::fromResultSet, cache.getElections(), Election::getId),
+                this.load("blocks", ElectionBlock::fromResultSet, cache.getBlocks(), ElectionBlock::getId),
+                this.load("holograms", DBHologram::fromResultSet, cache.getHolograms(), DBHologram::getId),
+                this.load("claims", EClaim::fromResultSet, cache.getClaims(), EClaim::getId)
+        ).thenApply((ignored) -> true);
+
+        // a failed load completes off the main thread, the reloaded caches are only handed out from it
+        reloaded.thenAccept((result) -> scheduler.sync(() -> {
+            long elapsedMs = System.currentTimeMillis() - start;
 
-        database.getClaims()
-                .thenAccept((claims) -> {
-                    cache.getClaims().reset();
-                    claims.values().forEach(claim -> cache.getClaims().add(claim.getId(), claim));
-                    if(completions.addAndGet(1) == nCompletions) {
-                        reloaded.complete(true);
-                    }
-                });
+            if (!cache.verifyStore()) {
+                logger.warning("CacheTask: vote store indexes did not match its rows, rebuilt them");
+            }
 
-        reloaded.thenAccept((result) -> {
-            long elapsedMs = System.currentTimeMillis() - start;
+            if (!cache.verifyTally()) {
+                logger.warning("CacheTask: vote tally did not match the loaded votes, rebuilt it");
+            }
 
             cache.getEventHandler().onCacheReloaded();
 
             scheduler.repeating(this.persist(), 60 * 20L, 60, TimeUnit.SECONDS);
+            scheduler.repeating(new ResyncTask(logger, scheduler, database, cache, start), resyncSeconds * 20L, (int) resyncSeconds, TimeUnit.SECONDS);
             logger.info(String.format("Loaded in %d ms.", elapsedMs));
+        }));
+    }
+
+    private <V extends ICacheEntry> CompletableFuture<Void> load(String name, RowReader<V> reader, Cache<UUID, V> target, Function<V, UUID> key) {
+        return this.load(name, (rows) -> database.stream(name, reader, rows), target::load, key);
+    }
+
+    /**
+     * Stream the new generation of a cache off the main thread, then apply it on the main thread in one go
+     * @param source Streams the rows to the consumer, completes with their number
+     * @param apply Applies the generation to the cache
+     */
+    private <V extends ICacheEntry> CompletableFuture<Void> load(String name, Function<Consumer<V>, CompletableFuture<Integer>> source, Consumer<Map<UUID, V>> apply, Function<V, UUID> key) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        long start = System.currentTimeMillis();
+        Map<UUID, V> generation = new HashMap<>();
+
+        source.apply((row) -> generation.put(key.apply(row), row)).thenAccept((rows) -> {
+            if (rows == null) {
+                logger.warning(String.format("CacheTask: unable to load %s, keeping the cached ones", name));
+                future.complete(null);
+                return;
+            }
+
+            long read = System.currentTimeMillis();
+
+            scheduler.sync(() -> {
+                apply.accept(generation);
+                future.complete(null);
+
+                long applied = System.currentTimeMillis();
+                logger.info(String.format("CacheTask: loaded %d %s in %d ms (read %d ms, apply %d ms)", rows, name, applied - start, read - start, applied - read));
+            });
         });
+
+        return future;
     }
 
     private Runnable persist() {
@@ -124,6 +157,13 @@ public class CacheTask implements Runnable {
             if (nMutations > 0) {
                 logger.warning(String.format("CacheTask: persisted %d changes", nMutations));
             }
+
+            cache.getVotes().compact();
+
+            int evicted = cache.evictClosed();
+            if (evicted > 0) {
+                logger.info(String.format("CacheTask: dropped %d votes of closed elections from the cache", evicted));
+            }
         };
     }
 }
@@ -0,0 +1,93 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.tasks;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import me.lorenzo0111.elections.cache.CacheManager;
+import me.lorenzo0111.elections.database.Changes;
+import me.lorenzo0111.elections.database.IDatabaseManager;
+import me.lorenzo0111.elections.scheduler.IAdvancedScheduler;
+
+/**
+ * Fetches the rows changed since the last sync and merges them into the cache
+ */
+public class ResyncTask implements Runnable {
+    // rows are stamped with the clock of the server that wrote them and can commit late, so every sync looks back a bit
+    private static final long OVERLAP_MS = 10000L;
+
+    private final Logger logger;
+    private final IAdvancedScheduler scheduler;
+    private final IDatabaseManager database;
+    private final CacheManager cache;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile long since;
+
+    /**
+     * @param since Change marker of the last full load
+     */
+    public ResyncTask(Logger logger, IAdvancedScheduler scheduler, IDatabaseManager database, CacheManager cache, long since) {
+        this.logger = logger;
+        this.scheduler = scheduler;
+        this.database = database;
+        this.cache = cache;
+        this.since = since;
+    }
+
+    @Override
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+
+        database.getChanges(since - OVERLAP_MS)
+                .whenComplete((changes, error) -> {
+                    if (changes == null || changes.isEmpty()) {
+                        running.set(false);
+                        return;
+                    }
+
+                    scheduler.sync(() -> {
+                        try {
+                            this.apply(changes);
+                        } finally {
+                            running.set(false);
+                        }
+                    });
+                });
+    }
+
+    private void apply(Changes changes) {
+        int nChanges = cache.merge(changes);
+
+        since = Math.max(since, changes.getMarker());
+
+        if (nChanges > 0) {
+            logger.info(String.format("ResyncTask: merged %d changes from the database", nChanges));
+            cache.getEventHandler().onCacheSynced();
+        }
+    }
+}
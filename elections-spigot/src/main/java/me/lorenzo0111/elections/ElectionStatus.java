@@ -23,24 +23,34 @@
 */
 package me.lorenzo0111.elections;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
 import me.lorenzo0111.elections.api.objects.Election;
+import me.lorenzo0111.elections.cache.ElectionTally;
 
 public class ElectionStatus {
     private Election election;
     private Integer totalVotes;
-    private HashMap<UUID, Integer> partyVotes;
+    private Map<UUID, Integer> partyVotes;
+
+    ElectionStatus(Election election, ElectionTally tally) {
+        Map<UUID, Integer> votes = new HashMap<UUID, Integer>();
+        for (UUID partyId : election.getParties().keySet()) {
+            votes.put(partyId, 0);
+        }
 
-    ElectionStatus(Election election) {
         this.election = election;
         this.totalVotes = 0;
-        this.partyVotes = new HashMap<UUID, Integer>();
-        for (UUID partyId : election.getParties().keySet()) {
-            this.partyVotes.put(partyId, 0);
+
+        if (tally != null) {
+            votes.putAll(tally.getPartyVotes());
+            this.totalVotes = tally.getTotalVotes();
         }
+
+        this.partyVotes = Collections.unmodifiableMap(votes);
     }
 
     @Override
@@ -56,18 +66,6 @@ public class ElectionStatus {
         return totalVotes;
     }
 
-    public void addVote(UUID partyId) {
-        Integer partyCount = partyVotes.get(partyId);
-        if (partyCount == null) {
-            partyCount = 0;
-        }
-
-        partyCount++;
-        partyVotes.put(partyId, partyCount);
-
-        totalVotes++;
-    }
-
     public Map<UUID, Integer> getPartyVotes() {
         return partyVotes;
     }
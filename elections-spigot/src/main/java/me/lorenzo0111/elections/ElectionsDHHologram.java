@@ -29,7 +29,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 
 import com.google.gson.Gson;
@@ -41,14 +40,12 @@ import com.google.common.reflect.TypeToken;
 
 import me.lorenzo0111.elections.api.objects.Cache;
 import me.lorenzo0111.elections.api.objects.DBHologram;
-import me.lorenzo0111.elections.api.objects.Election;
-import me.lorenzo0111.elections.api.objects.Party;
-import me.lorenzo0111.elections.handlers.Messages;
 
 public class ElectionsDHHologram implements IElectionsHologram {
     private ElectionsPlus plugin;
     private Hologram holo;
     private DBHologram dbholo;
+    private List<String> shown = new ArrayList<String>();
 
     ElectionsDHHologram(ElectionsPlus plugin, String name, Location location, List<String> contents, boolean dirty) {
         if (contents == null) {
@@ -86,70 +83,39 @@ public class ElectionsDHHologram implements IElectionsHologram {
     }
 
     public void refresh() {
-        Map<UUID, ElectionStatus> statuses = this.plugin.getElectionStatuses();
-        this.update(statuses);
+        this.plugin.getHologramRenderer().request(this);
     }
 
-    private void update(Map<UUID, ElectionStatus> statuses) {
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            try {
-                List<String> holoLines = new ArrayList<String>();
-
-                Cache<UUID, Party> parties = plugin.getCache().getParties();
-                for (String line : dbholo.getContents()) {
-                    if (!line.equals("%elections_status%")) {
-                        holoLines.add(Messages.componentString(false, Messages.single("text", line), "hologram", "text"));
-                        continue;
-                    }
-
-                    for (ElectionStatus status : statuses.values()) {
-                        Election election = status.getElection();
-                        Map<String, String> placeholders = Messages.multiple("name", election.getName(), "totalvotes", status.getTotalVotes().toString());
-                        if (election.isOpen()) {
-                            placeholders.put("state", Messages.get("open"));
-                            holoLines.add(Messages.componentString(false, placeholders, "hologram-status", "open"));
-                            continue;
-                        }
-
-                        placeholders.put("state", Messages.get("closed"));
-
-                        Map<UUID, Integer> winners = status.winners();
-                        if (winners == null || winners.size() == 0) {
-                            holoLines.add(Messages.componentString(false, placeholders, "hologram-status", "closed-no-winner"));
-                            continue;
-                        }
-
-                        String s = "";
-                        for (UUID partyId : winners.keySet()) {
-                            Party party = parties.get(partyId);
-                            if (party == null) {
-                                continue;
-                            }
-
-                            if (!s.equals("")) {
-                                s += ", ";
-                            }
-                            s += party.getName();
-                        }
-                        placeholders.put("winner", s);
-
-                        if (winners.size() == 1) {
-                            holoLines.add(Messages.componentString(false, placeholders, "hologram-status", "closed-winner"));
-                            continue;
-                        }
-
-                        holoLines.add(Messages.componentString(false, placeholders, "hologram-status", "closed-tie"));
-                    }
-                }
-                DHAPI.setHologramLines(holo, holoLines);
-            } catch(Exception e) {
-                this.plugin.getLogger().severe("EXCEPTION: " + e.toString());
+    public List<String> getContents() {
+        return new ArrayList<String>(dbholo.getContents());
+    }
+
+    public int apply(List<String> lines) {
+        int edits = HologramRenderer.diff(shown, lines, new HologramRenderer.LineEditor() {
+            public void set(int index, String text) {
+                DHAPI.setHologramLine(holo, index, text);
+            }
+
+            public void insert(int index, String text) {
+                DHAPI.insertHologramLine(holo, index, text);
+            }
+
+            public void append(String text) {
+                DHAPI.addHologramLine(holo, text);
+            }
+
+            public void remove(int index) {
+                DHAPI.removeHologramLine(holo, index);
             }
         });
+
+        shown = new ArrayList<String>(lines);
+        return edits;
     }
 
     public void clear() {
         DHAPI.setHologramLines(holo, new ArrayList<String>());
+        shown = new ArrayList<String>();
         Cache<UUID, DBHologram> dbholos = plugin.getCache().getHolograms();
         dbholo.clear();
         dbholos.persist();
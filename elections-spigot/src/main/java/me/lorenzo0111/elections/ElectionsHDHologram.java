@@ -29,7 +29,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 
 import com.google.gson.Gson;
@@ -37,18 +36,18 @@ import com.google.common.reflect.TypeToken;
 
 import me.filoghost.holographicdisplays.api.HolographicDisplaysAPI;
 import me.filoghost.holographicdisplays.api.hologram.Hologram;
+import me.filoghost.holographicdisplays.api.hologram.HologramLine;
 import me.filoghost.holographicdisplays.api.hologram.HologramLines;
+import me.filoghost.holographicdisplays.api.hologram.line.TextHologramLine;
 import me.lorenzo0111.elections.api.objects.Cache;
 import me.lorenzo0111.elections.api.objects.DBHologram;
-import me.lorenzo0111.elections.api.objects.Election;
-import me.lorenzo0111.elections.api.objects.Party;
-import me.lorenzo0111.elections.handlers.Messages;
 
 public class ElectionsHDHologram implements IElectionsHologram {
     private ElectionsPlus plugin;
     private HolographicDisplaysAPI holoApi;
     private Hologram holo;
     private DBHologram dbholo;
+    private List<String> shown = new ArrayList<String>();
 
     ElectionsHDHologram(ElectionsPlus plugin, HolographicDisplaysAPI api, String name, Location location, List<String> contents, boolean dirty) {
         if (contents == null) {
@@ -88,70 +87,53 @@ public class ElectionsHDHologram implements IElectionsHologram {
     }
 
     public void refresh() {
-        Map<UUID, ElectionStatus> statuses = this.plugin.getElectionStatuses();
-        this.update(statuses);
+        this.plugin.getHologramRenderer().request(this);
     }
 
-    private void update(Map<UUID, ElectionStatus> statuses) {
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            try {
-                HologramLines holoLines = holo.getLines();
-                holoLines.clear();
-
-                Cache<UUID, Party> parties = plugin.getCache().getParties();
-                for (String line : dbholo.getContents()) {
-                    if (!line.equals("%elections_status%")) {
-                        holoLines.appendText(Messages.componentString(false, Messages.single("text", line), "hologram", "text"));
-                        continue;
-                    }
-
-                    for (ElectionStatus status : statuses.values()) {
-                        Election election = status.getElection();
-                        Map<String, String> placeholders = Messages.multiple("name", election.getName(), "totalvotes", status.getTotalVotes().toString());
-                        if (election.isOpen()) {
-                            placeholders.put("state", Messages.get("open"));
-                            holoLines.appendText(Messages.componentString(false, placeholders, "hologram-status", "open"));
-                            continue;
-                        }
-
-                        placeholders.put("state", Messages.get("closed"));
-
-                        Map<UUID, Integer> winners = status.winners();
-                        if (winners == null || winners.size() == 0) {
-                            holoLines.appendText(Messages.componentString(false, placeholders, "hologram-status", "closed-no-winner"));
-                            continue;
-                        }
-
-                        String s = "";
-                        for (UUID partyId : winners.keySet()) {
-                            Party party = parties.get(partyId);
-                            if (party == null) {
-                                continue;
-                            }
-
-                            if (!s.equals("")) {
-                                s += ", ";
-                            }
-                            s += party.getName();
-                        }
-                        placeholders.put("winner", s);
-
-                        if (winners.size() == 1) {
-                            holoLines.appendText(Messages.componentString(false, placeholders, "hologram-status", "closed-winner"));
-                            continue;
-                        }
-
-                        holoLines.appendText(Messages.componentString(false, placeholders, "hologram-status", "closed-tie"));
-                    }
+    public List<String> getContents() {
+        return new ArrayList<String>(dbholo.getContents());
+    }
+
+    public int apply(List<String> lines) {
+        HologramLines holoLines = holo.getLines();
+        if (holoLines.size() != shown.size()) {
+            // changed behind our back, start over
+            holoLines.clear();
+            shown = new ArrayList<String>();
+        }
+
+        int edits = HologramRenderer.diff(shown, lines, new HologramRenderer.LineEditor() {
+            public void set(int index, String text) {
+                HologramLine line = holoLines.get(index);
+                if (line instanceof TextHologramLine) {
+                    ((TextHologramLine) line).setText(text);
+                    return;
                 }
-            } catch(Exception e) {
-                this.plugin.getLogger().severe("EXCEPTION: " + e.toString());
+
+                holoLines.remove(index);
+                holoLines.insertText(index, text);
+            }
+
+            public void insert(int index, String text) {
+                holoLines.insertText(index, text);
+            }
+
+            public void append(String text) {
+                holoLines.appendText(text);
+            }
+
+            public void remove(int index) {
+                holoLines.remove(index);
             }
         });
+
+        shown = new ArrayList<String>(lines);
+        return edits;
     }
 
     public void clear() {
         holo.getLines().clear();
+        shown = new ArrayList<String>();
         Cache<UUID, DBHologram> dbholos = plugin.getCache().getHolograms();
         dbholo.clear();
         dbholos.persist();
@@ -35,14 +35,20 @@ import me.lorenzo0111.elections.api.objects.ElectionBlock;
 import me.lorenzo0111.elections.api.objects.Party;
 import me.lorenzo0111.elections.api.objects.Vote;
 import me.lorenzo0111.elections.cache.CacheManager;
+import me.lorenzo0111.elections.cache.VoteCache;
+import me.lorenzo0111.elections.cache.VoteJournal;
+import me.lorenzo0111.elections.cache.VoteTally;
 import me.lorenzo0111.elections.commands.ElectionsCommand;
 import me.lorenzo0111.elections.constants.Getters;
 import me.lorenzo0111.elections.database.DatabaseManager;
 import me.lorenzo0111.elections.database.IDatabaseManager;
 import me.lorenzo0111.elections.handlers.Messages;
+import me.lorenzo0111.elections.handlers.ProfileResolver;
 import me.lorenzo0111.elections.listeners.JoinListener;
 import me.lorenzo0111.elections.listeners.VoteBlockListener;
+import me.lorenzo0111.elections.menus.MenuItems;
 import me.lorenzo0111.elections.scheduler.BukkitScheduler;
+import me.lorenzo0111.elections.sync.CoherenceService;
 import me.lorenzo0111.pluginslib.audience.BukkitAudienceManager;
 import me.lorenzo0111.pluginslib.command.Customization;
 import me.lorenzo0111.pluginslib.config.ConfigExtractor;
@@ -57,8 +63,6 @@ import org.bstats.bukkit.Metrics;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.OfflinePlayer;
-import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -70,10 +74,14 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler {
     private final CacheManager cache = new CacheManager(this.getLogger(), this);
@@ -87,6 +95,9 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
 
     private Permission permissions;
     private HashMap<String, IElectionsHologram> holograms;
+    private final HologramRenderer hologramRenderer = new HologramRenderer(this);
+    private final MenuItems menuItems = new MenuItems();
+    private ProfileResolver profiles;
     private ElectionsHologramAPI holoApi;
     private GriefPrevention gp;
     private VoteBlockListener voteBlockListener;
@@ -108,7 +119,9 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
 
         if(Bukkit.getPluginManager().getPlugin("PlaceholderAPI") != null) {
             this.getLogger().info("Placeholders enabled.");
-            new ElectionsPlusPlaceholderExpansion(this).register();
+            ElectionsPlusPlaceholderExpansion expansion = new ElectionsPlusPlaceholderExpansion(this);
+            expansion.register();
+            Bukkit.getPluginManager().registerEvents(expansion, this);
         } else {
             this.getLogger().info("Placeholders disabled: add PlaceholderAPI plugin to enable.");
         }
@@ -136,13 +149,27 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
             return;
         }
 
+         cache.persist();
+
          try {
              this.manager.closeConnection();
          } catch (SQLException e) {
              e.printStackTrace();
          }
 
-         Bukkit.getScheduler().cancelTasks(this);   // this could cause some queued up database updates to get lost...
+         Bukkit.getScheduler().cancelTasks(this);
+
+         this.getLogger().info(String.format("HologramRenderer: %d refreshes requested, %d render passes, %d holograms rendered, %d line edits", hologramRenderer.getRequested(), hologramRenderer.getPasses(), hologramRenderer.getRendered(), hologramRenderer.getEdits()));
+
+         CoherenceService coherence = this.manager instanceof DatabaseManager ? ((DatabaseManager) this.manager).getCoherence() : null;
+         if (coherence != null) {
+             this.getLogger().info(String.format("CoherenceService: %d changes published (%.1f bytes each), %d received, %d merged, convergence %.1f ms average, %d ms max", coherence.getPublished(), coherence.getBytesPerChange(), coherence.getReceived(), coherence.getApplied(), coherence.getAverageConvergence(), coherence.getMaxConvergence()));
+         }
+
+         VoteJournal journal = cache.getVotes().getJournal();
+         if (journal != null) {
+             journal.close();
+         }
 
          Messages.close();
     }
@@ -190,11 +217,11 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
             this.getLogger().info(String.format("claimTransfer[claim %d/%s]: owner (admin) unchanged", id, ename));
             return;
         } else if (oldOwner == null) {
-            this.getLogger().info(String.format("claimTransfer[claim %d/%s]: owner changed admin -> %s/%s", id, ename, newOwner.toString(), Bukkit.getOfflinePlayer(newOwner).getName()));
+            this.getLogger().info(String.format("claimTransfer[claim %d/%s]: owner changed admin -> %s/%s", id, ename, newOwner.toString(), profiles.name(newOwner, "?")));
         } else if (newOwner == null) {
-            this.getLogger().info(String.format("claimTransfer[claim %d/%s]: owner changed %s/%s -> admin", id, ename, oldOwner.toString(), Bukkit.getOfflinePlayer(oldOwner).getName()));
+            this.getLogger().info(String.format("claimTransfer[claim %d/%s]: owner changed %s/%s -> admin", id, ename, oldOwner.toString(), profiles.name(oldOwner, "?")));
         } else if (oldOwner.equals(newOwner)) {
-            this.getLogger().info(String.format("claimTransfer[claim %d/%s]: owner (%s/%s) unchanged", id, ename, newOwner.toString(), Bukkit.getOfflinePlayer(newOwner).getName()));
+            this.getLogger().info(String.format("claimTransfer[claim %d/%s]: owner (%s/%s) unchanged", id, ename, newOwner.toString(), profiles.name(newOwner, "?")));
             return;
         }
 
@@ -268,6 +295,8 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
 
             this.voteBlockListener = new VoteBlockListener(this);
 
+            warmProfiles();
+
             if (this.holoApi.enabled()) {
                 holoReset();
             }
@@ -284,6 +313,33 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
         }
     }
 
+    @Override
+    public void onCacheSynced() {
+        if (this.holograms != null) {
+            holoRefresh();
+        }
+    }
+
+    private void warmProfiles() {
+        Set<UUID> uuids = new HashSet<UUID>();
+        UUID nilUuid = new UUID(0, 0);
+
+        for (Party party : getCache().getParties().map().values()) {
+            if (!party.getOwner().equals(nilUuid)) {
+                uuids.add(party.getOwner());
+            }
+            uuids.addAll(party.getMembers());
+        }
+
+        for (EClaim eclaim : getCache().getClaims().map().values()) {
+            if (eclaim.getOwner() != null) {
+                uuids.add(eclaim.getOwner());
+            }
+        }
+
+        profiles.warm(uuids);
+    }
+
     private void cleanCache() {
         try {
             cleanParties();
@@ -301,15 +357,16 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
         // currently a noop - nothing can go bad because it doesn't link to any other entities
     }
 
+    // the block data is checked by VoteBlockListener once the chunk of the block is loaded
     private void cleanBlocks() {
         Cache<UUID, ElectionBlock> blocks = cache.getBlocks();
 
         boolean dirty = false;
         for (ElectionBlock block : Map.copyOf(blocks.map()).values()) {
-            if (!blockExists(block)) {
+            if (Bukkit.getWorld(block.getWorld()) == null) {
                 blocks.remove(block.getId());
                 dirty = true;
-                getLogger().info(String.format("Removed electionblock at location %s (blockdata changed)", block.getLocation().toString()));
+                getLogger().info(String.format("Removed electionblock at location %s (world not found)", block.getLocation().toString()));
             }
         }
 
@@ -318,23 +375,6 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
         }
     }
 
-    private boolean blockExists(ElectionBlock eblock) {
-        World world = Bukkit.getWorld(eblock.getWorld());
-        if (world == null) {
-            return false;
-        }
-
-        Location location = Location.deserialize(eblock.getLocation());
-        Block block = world.getBlockAt(location);
-        String blockData = block.getBlockData().getAsString();
-
-        if (eblock.getBlockData().equals(blockData)) {
-            return true;
-        }
-
-        return false;
-    }
-
     private void cleanElections() {
         Cache<UUID, Election> elections = cache.getElections();
         Cache<UUID, Party> parties = cache.getParties();
@@ -360,10 +400,11 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
     private void cleanVotes() {
         Cache<UUID, Election> elections = cache.getElections();
         Cache<UUID, Party> parties = cache.getParties();
-        Cache<UUID, Vote> votes = cache.getVotes();
+        VoteCache votes = cache.getVotes();
 
         boolean dirty = false;
-        for (Vote vote : Map.copyOf(votes.map()).values()) {
+        // only the votes that point to a missing election or party are built
+        for (Vote vote : votes.votesWhere((electionId, partyId) -> elections.get(electionId) == null || parties.get(partyId) == null)) {
             Election election = elections.get(vote.getElectionId());
             if (election == null) {
                 votes.remove(vote.getId());
@@ -431,6 +472,21 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
         this.api = new ElectionsPlusAPI(this);
         Bukkit.getServicesManager().register(IElectionsPlusAPI.class, api, this, ServicePriority.Normal);
         Bukkit.getPluginManager().registerEvents(new JoinListener(), this);
+
+        try {
+            cache.getVotes().setJournal(new VoteJournal(this.getLogger(), getDataFolder().toPath().resolve("votes.journal")));
+        } catch (IOException e) {
+            this.getLogger().severe("Unable to open the vote journal, votes will only be saved by the database");
+            e.printStackTrace();
+        }
+
+        hologramRenderer.setInterval(config.node("holograms", "refresh-interval").getLong(20));
+
+        this.profiles = new ProfileResolver(this, config.node("profiles", "cache-size").getInt(1000));
+        long profilesRefresh = TimeUnit.MINUTES.toSeconds(Math.max(1, config.node("profiles", "refresh-minutes").getInt(30))) * 20;
+        Bukkit.getScheduler().runTaskTimerAsynchronously(this, profiles::refresh, profilesRefresh, profilesRefresh);
+        cache.getVotes().setHistoryLimits(config.node("votes", "history-elections").getInt(4), TimeUnit.MINUTES.toMillis(config.node("votes", "history-minutes").getInt(10)));
+
         switch (getConfig().getString("database.type", "NULL").toUpperCase()) {
             case "SQLITE":
                 try {
@@ -483,19 +539,34 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
         configExtractor.extract();
         this.config = configExtractor.toConfigurate();
         Messages.init(messages, config("prefix"), this);
+        menuItems.clear();
     }
 
     public void win(UUID uuid) {
-        String name = Bukkit.getOfflinePlayer(uuid).getName();
+        profiles.resolve(uuid)
+            .thenAccept(profile -> {
+                if (!this.isEnabled()) {
+                    this.getLogger().warning(String.format("Plugin disabled before the winner %s got the rank", uuid));
+                    return;
+                }
 
-        if (!this.config("rank", "command").equalsIgnoreCase("none") && name != null) {
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), this.config("rank", "command").replace("%player%", name));
-        }
+                Bukkit.getScheduler().runTask(this, () -> {
+                    String name = profile.getName();
 
-        if (permissions == null)
-            return;
+                    if (!this.config("rank", "command").equalsIgnoreCase("none") && name != null) {
+                        Bukkit.dispatchCommand(Bukkit.getConsoleSender(), this.config("rank", "command").replace("%player%", name));
+                    }
+
+                    if (permissions == null)
+                        return;
 
-        permissions.playerAddGroup(Bukkit.getWorlds().get(0).getName(), Bukkit.getOfflinePlayer(uuid), config.node("rank", "name").getString());
+                    permissions.playerAddGroup(Bukkit.getWorlds().get(0).getName(), profile.getPlayer(), config.node("rank", "name").getString());
+                });
+            })
+            .exceptionally(e -> {
+                this.getLogger().severe(String.format("Unable to give the rank to the winner %s: %s", uuid, e));
+                return null;
+            });
     }
 
     public ConfigurationNode config() {
@@ -617,17 +688,27 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
     }
 
     public Collection<IElectionsHologram> holoList() {
+        if (holograms == null) {
+            return Collections.emptyList();
+        }
+
         return holograms.values();
     }
 
     public void holoRefresh() {
-        try {
-            for (IElectionsHologram holo : holograms.values()) {
-                holo.refresh();
-            }
-        } catch(Exception e) {
-            this.getLogger().severe("holoRefresh: EXCEPTION: " + e.toString());
-        }
+        hologramRenderer.requestAll();
+    }
+
+    public HologramRenderer getHologramRenderer() {
+        return hologramRenderer;
+    }
+
+    public MenuItems getMenuItems() {
+        return menuItems;
+    }
+
+    public ProfileResolver getProfiles() {
+        return profiles;
     }
 
     public Map<UUID, ElectionStatus> getElectionStatuses() {
@@ -639,49 +720,21 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
             return statuses;
         }
 
+        VoteTally tally = this.getCache().getTally();
         for (Election election : elections.map().values()) {
-            statuses.put(election.getId(), new ElectionStatus(election));
-        }
-
-        Cache<UUID, Vote> votes = this.getCache().getVotes();
-        Cache<UUID, Party> parties = this.getCache().getParties();
-
-        if (votes == null) {
-            this.getLogger().info("getElectionStatuses: null votes");
-            return statuses;
-        }
-
-        for (Vote vote : votes.map().values()) {
-            UUID electionId = vote.getElectionId();
-            UUID partyId = vote.getParty();
-
-            ElectionStatus status = statuses.get(electionId);
-            if (status == null) {
-                String partyName = partyId.toString();
-                Party party = parties.get(partyId);
-                if (party != null) {
-                    partyName = party.getName();
-                }
-                this.getLogger().warning(String.format("vote for election %s party %s: election not found", electionId.toString(), partyName));
-                continue;
-            }
-
-            status.addVote(partyId);
+            statuses.put(election.getId(), new ElectionStatus(election, tally.get(election.getId())));
         }
 
         return statuses;
     }
 
     public ElectionStatus getElectionStatus(String electionName) {
-        Map<UUID, ElectionStatus> statuses = this.getElectionStatuses();
-
-        for (ElectionStatus status : statuses.values()) {
-            if (status.getElection().getName().equals(electionName)) {
-                return status;
-            }
+        Election election = this.getCache().getElections().findByName(electionName);
+        if (election == null) {
+            return null;
         }
 
-        return null;
+        return new ElectionStatus(election, this.getCache().getTally().get(election.getId()));
     }
 
     public GriefPrevention getGriefPrevention() {
@@ -708,14 +761,12 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
         }
     }
 
-    public Vote findVote(Cache<UUID, Vote> votes, Election election, UUID playerId) {
-        for (Vote vote : votes.map().values()) {
-            if (vote.getElectionId().equals(election.getId()) && vote.getPlayer().equals(playerId)) {
-                return vote;
-            }
-        }
+    public Vote findVote(Election election, UUID playerId) {
+        return cache.getVotes().findVote(election.getId(), playerId);
+    }
 
-        return null;
+    public boolean hasVoted(Election election, UUID playerId) {
+        return cache.getVotes().hasVoted(election.getId(), playerId);
     }
 
     public VoteBlockListener getVoteBlockListener() {
@@ -745,11 +796,13 @@ public final class ElectionsPlus extends JavaPlugin implements CacheEventHandler
             return defaultOwner;
         }
 
-        try {
-            return Bukkit.getOfflinePlayer(party.getOwner());
-        } catch(Exception e) {
+        // the default owner stands in while the profile is resolved
+        OfflinePlayer partyOwner = profiles.player(partyOwnerUuid);
+        if (partyOwner == null) {
             return defaultOwner;
         }
+
+        return partyOwner;
     }
 
 }
\ No newline at end of file
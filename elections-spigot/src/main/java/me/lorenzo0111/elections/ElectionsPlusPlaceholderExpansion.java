@@ -28,19 +28,66 @@ import me.clip.placeholderapi.PlaceholderAPIPlugin;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import me.lorenzo0111.elections.api.objects.Cache;
 import me.lorenzo0111.elections.api.objects.Election;
+import me.lorenzo0111.elections.api.objects.Party;
 import me.lorenzo0111.elections.api.objects.Vote;
+import me.lorenzo0111.elections.cache.CacheManager;
+import me.lorenzo0111.elections.cache.ElectionTally;
+import me.lorenzo0111.elections.cache.VoteCache;
+import me.lorenzo0111.elections.handlers.PlaceholderEngine;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 
 import org.bukkit.OfflinePlayer;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.jetbrains.annotations.NotNull;
 
-public class ElectionsPlusPlaceholderExpansion extends PlaceholderExpansion {
+import static me.lorenzo0111.elections.handlers.PlaceholderEngine.ELECTIONS;
+import static me.lorenzo0111.elections.handlers.PlaceholderEngine.PARTIES;
+import static me.lorenzo0111.elections.handlers.PlaceholderEngine.VOTES;
+
+public class ElectionsPlusPlaceholderExpansion extends PlaceholderExpansion implements Listener {
     private final ElectionsPlus plugin;
+    private final PlaceholderEngine engine = new PlaceholderEngine();
 
     public ElectionsPlusPlaceholderExpansion(ElectionsPlus plugin) {
-            this.plugin = plugin;
+        this.plugin = plugin;
+
+        /*
+            Placeholders:
+            %elections_info%
+            %elections_open%
+            %elections_isopen%
+            %elections_isopen_<name>%
+            %elections_voted_<election>%
+            %elections_turnout_<election>%
+            %elections_turnout_<election>,<election>...% (players that voted in all of them)
+            %elections_leader_<election>%
+            %elections_votes_<election>%
+            %elections_votes_<election>_<party>%
+            %elections_percent_<election>_<party>%
+            %elections_rank_<election>_<n>%
+        */
+        engine.register("info", false, ELECTIONS, (player, argument) -> this.info())
+                .register("open", false, ELECTIONS, (player, argument) -> String.valueOf(plugin.getCache().getElections().size()))
+                .register("isopen", false, ELECTIONS, (player, argument) -> this.isOpen())
+                .register("isopen_", false, ELECTIONS, (player, argument) -> this.isOpen(argument))
+                .register("voted_", true, ELECTIONS | VOTES, this::voted)
+                .register("turnout_", false, ELECTIONS | VOTES, (player, argument) -> this.turnout(argument))
+                .register("leader_", false, ELECTIONS | PARTIES | VOTES, (player, argument) -> this.leader(argument))
+                .register("votes_", false, ELECTIONS | PARTIES | VOTES, (player, argument) -> this.votes(argument))
+                .register("percent_", false, ELECTIONS | PARTIES | VOTES, (player, argument) -> this.percent(argument))
+                .register("rank_", false, ELECTIONS | PARTIES | VOTES, (player, argument) -> this.rank(argument));
+
+        CacheManager cache = plugin.getCache();
+        cache.getElections().addIndex(engine.index(ELECTIONS, null));
+        cache.getParties().addIndex(engine.index(PARTIES, null));
+        cache.getVotes().addIndex(engine.index(VOTES, Vote::getPlayer));
+        cache.getVotes().addListener(() -> engine.invalidate(VOTES));
     }
 
     @Override
@@ -58,80 +105,171 @@ public class ElectionsPlusPlaceholderExpansion extends PlaceholderExpansion {
         return "1.3";
     }
 
-    /*
-        Placeholders:
-        %elections_open%
-        %election_isopen%
-        %elections_isopen_<name>%
-        %elections_voted_<election>%
-    */
     @Override
     public String onRequest(OfflinePlayer player, @NotNull String params) {
-        if (params.equalsIgnoreCase("info")) {
-            Map<UUID, Election> elections = plugin.getCache().getElections().map();
-
-            String r = "";
-            for (Election election : elections.values()) {
-                if (election.isOpen()) {
-                    //results.add(election.getName() + ": open");
-                    r += election.getName() + ": open";
-                } else {
-                    r += election.getName() + ": closed";
-                }
-            }
-            return r;
+        return engine.request(player, params);
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        engine.forget(event.getPlayer().getUniqueId());
+    }
+
+    public PlaceholderEngine getEngine() {
+        return engine;
+    }
+
+    private String info() {
+        StringBuilder r = new StringBuilder();
+        for (Election election : plugin.getCache().getElections().map().values()) {
+            r.append(election.getName()).append(election.isOpen() ? ": open" : ": closed");
         }
+        return r.toString();
+    }
 
-        if (params.equalsIgnoreCase("open")) {
-            return String.valueOf(plugin.getCache().getElections().size());
+    private String isOpen() {
+        for (Election election : plugin.getCache().getElections().map().values()) {
+            if (election.isOpen()) {
+                return PlaceholderAPIPlugin.booleanTrue();
+            }
         }
 
-        if (params.equalsIgnoreCase("isopen")) {
-            return plugin.getCache()
-                    .getElections()
-                    .map()
-                    .entrySet()
-                    .stream()
-                    .filter(entry -> entry.getValue().isOpen())
-                    .findFirst()
-                    .map((e) -> PlaceholderAPIPlugin.booleanTrue())
-                    .orElse(PlaceholderAPIPlugin.booleanFalse());
+        return PlaceholderAPIPlugin.booleanFalse();
+    }
+
+    private String isOpen(String name) {
+        Election election = plugin.getCache().getElections().findByName(name);
+
+        if (election != null && election.isOpen()) {
+            return PlaceholderAPIPlugin.booleanTrue();
         }
 
-        if (params.startsWith("isopen_")) {
-            String name = params.split("isopen_")[1];
-            Cache<UUID, Election> elections = plugin.getCache().getElections();
+        return PlaceholderAPIPlugin.booleanFalse();
+    }
 
-            for(Election election : elections.map().values()) {
-                if (election.getName().equals(name)) {
-                    return election.isOpen() ? PlaceholderAPIPlugin.booleanTrue() : PlaceholderAPIPlugin.booleanFalse();
-                }
-            }
+    private String voted(OfflinePlayer player, String electionName) {
+        Election election = plugin.getCache().getElections().findByName(electionName);
 
+        if (election == null || !plugin.hasVoted(election, player.getUniqueId())) {
             return PlaceholderAPIPlugin.booleanFalse();
         }
 
-        if (params.startsWith("voted_")) {
-            String electionName = params.split("voted_")[1];
+        return PlaceholderAPIPlugin.booleanTrue();
+    }
 
-            Cache<UUID, Election> elections = plugin.getCache().getElections();
+    private String turnout(String electionNames) {
+        Cache<UUID, Election> elections = plugin.getCache().getElections();
+        List<UUID> electionIds = new ArrayList<>();
+        for (String electionName : electionNames.split(",")) {
             Election election = elections.findByName(electionName);
-
             if (election == null) {
-                return PlaceholderAPIPlugin.booleanFalse();
+                return "0";
             }
 
-            Cache<UUID, Vote> votes = plugin.getCache().getVotes();
+            electionIds.add(election.getId());
+        }
 
-            Vote vote = plugin.findVote(votes, election, player.getUniqueId());
-            if (vote == null) {
-                return PlaceholderAPIPlugin.booleanFalse();
-            }
+        VoteCache votes = plugin.getCache().getVotes();
+        if (electionIds.size() == 1) {
+            return String.valueOf(votes.getTurnout(electionIds.get(0)));
+        }
 
-            return PlaceholderAPIPlugin.booleanTrue();
+        return String.valueOf(votes.getTurnout(electionIds));
+    }
+
+    private String leader(String electionName) {
+        Election election = plugin.getCache().getElections().findByName(electionName);
+        if (election == null) {
+            return "";
+        }
+
+        return this.partyName(this.standings(election).getLeader());
+    }
+
+    private String votes(String argument) {
+        Election election = plugin.getCache().getElections().findByName(argument);
+        if (election != null) {
+            return String.valueOf(this.standings(election).getTotalVotes());
+        }
+
+        Ballot ballot = this.ballot(argument);
+        if (ballot == null) {
+            return "0";
+        }
+
+        return String.valueOf(this.standings(ballot.election).getVotes(ballot.party.getId()));
+    }
+
+    private String percent(String argument) {
+        Ballot ballot = this.ballot(argument);
+        if (ballot == null) {
+            return "0.0";
+        }
+
+        ElectionTally standings = this.standings(ballot.election);
+        int total = standings.getTotalVotes();
+        double percent = total == 0 ? 0 : standings.getVotes(ballot.party.getId()) * 100.0 / total;
+
+        return String.format(Locale.ROOT, "%.1f", percent);
+    }
+
+    private String rank(String argument) {
+        int separator = argument.lastIndexOf('_');
+        if (separator < 0) {
+            return "";
+        }
+
+        Election election = plugin.getCache().getElections().findByName(argument.substring(0, separator));
+        if (election == null) {
+            return "";
+        }
+
+        int rank;
+        try {
+            rank = Integer.parseInt(argument.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return "";
+        }
+
+        return this.partyName(this.standings(election).getParty(rank));
+    }
+
+    private ElectionTally standings(Election election) {
+        ElectionTally tally = plugin.getCache().getTally().get(election.getId());
+        return tally == null ? new ElectionTally(election.getId()) : tally;
+    }
+
+    private String partyName(UUID partyId) {
+        Party party = partyId == null ? null : plugin.getCache().getParties().get(partyId);
+        return party == null ? "" : party.getName();
+    }
 
+    /**
+     * Split "election_party", both names can contain '_'
+     */
+    private Ballot ballot(String argument) {
+        for (int separator = argument.indexOf('_'); separator >= 0; separator = argument.indexOf('_', separator + 1)) {
+            Election election = plugin.getCache().getElections().findByName(argument.substring(0, separator));
+            if (election == null) {
+                continue;
+            }
+
+            Party party = plugin.getCache().getParties().findByName(argument.substring(separator + 1));
+            if (party != null) {
+                return new Ballot(election, party);
+            }
         }
 
         return null;
     }
+
+    private static class Ballot {
+        private final Election election;
+        private final Party party;
+
+        private Ballot(Election election, Party party) {
+            this.election = election;
+            this.party = party;
+        }
+    }
 }
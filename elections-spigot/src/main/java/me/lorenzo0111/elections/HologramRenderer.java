@@ -0,0 +1,326 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.lorenzo0111.elections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bukkit.Bukkit;
+
+import me.lorenzo0111.elections.api.objects.Cache;
+import me.lorenzo0111.elections.api.objects.Election;
+import me.lorenzo0111.elections.api.objects.Party;
+import me.lorenzo0111.elections.handlers.Messages;
+
+/**
+ * Coalesces hologram refresh requests into at most one render pass per interval.
+ * A pass snapshots the dirty holograms on the main thread, computes their lines asynchronously
+ * from a single set of election statuses, then applies only the changed lines back on the main thread.
+ * Requests can come from any thread, and passes never overlap.
+ */
+public class HologramRenderer {
+    private final ElectionsPlus plugin;
+    private final Set<IElectionsHologram> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean all = new AtomicBoolean();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong passes = new AtomicLong();
+    private final AtomicLong rendered = new AtomicLong();
+    private final AtomicLong edits = new AtomicLong();
+    private volatile long intervalTicks = 20;
+    private volatile long lastPass;
+
+    public HologramRenderer(ElectionsPlus plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * @param ticks Minimum number of ticks between two render passes
+     */
+    public void setInterval(long ticks) {
+        this.intervalTicks = Math.max(1, ticks);
+    }
+
+    /**
+     * Render every hologram in the next pass
+     */
+    public void requestAll() {
+        requested.incrementAndGet();
+        all.set(true);
+        this.schedule();
+    }
+
+    /**
+     * Render a hologram in the next pass
+     */
+    public void request(IElectionsHologram hologram) {
+        requested.incrementAndGet();
+        dirty.add(hologram);
+        this.schedule();
+    }
+
+    /**
+     * @return Number of refreshes asked for
+     */
+    public long getRequested() {
+        return requested.get();
+    }
+
+    /**
+     * @return Number of render passes performed
+     */
+    public long getPasses() {
+        return passes.get();
+    }
+
+    /**
+     * @return Number of holograms rendered by the passes
+     */
+    public long getRendered() {
+        return rendered.get();
+    }
+
+    /**
+     * @return Number of line edits sent to the hologram plugin
+     */
+    public long getEdits() {
+        return edits.get();
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) {
+            // the pending pass picks this request up
+            return;
+        }
+
+        long wait = lastPass + intervalTicks * 50 - System.currentTimeMillis();
+        long delay = Math.max(0, (wait + 49) / 50);
+
+        Bukkit.getScheduler().runTaskLater(plugin, this::pass, delay);
+    }
+
+    private void finish() {
+        // requests made while the pass was running are picked up by the next one
+        scheduled.set(false);
+        if (all.get() || !dirty.isEmpty()) {
+            this.schedule();
+        }
+    }
+
+    private void pass() {
+        lastPass = System.currentTimeMillis();
+
+        Collection<IElectionsHologram> holograms = plugin.holoList();
+
+        Map<IElectionsHologram, List<String>> targets = new LinkedHashMap<>();
+        boolean everything = all.getAndSet(false);
+        for (IElectionsHologram hologram : holograms) {
+            if (dirty.remove(hologram) || everything) {
+                targets.put(hologram, hologram.getContents());
+            }
+        }
+
+        // holograms deleted since they were marked
+        dirty.removeIf(hologram -> !holograms.contains(hologram));
+
+        if (targets.isEmpty()) {
+            this.finish();
+            return;
+        }
+
+        passes.incrementAndGet();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> this.compose(targets));
+    }
+
+    private void compose(Map<IElectionsHologram, List<String>> targets) {
+        Map<IElectionsHologram, List<String>> lines = new LinkedHashMap<>();
+        try {
+            Map<UUID, ElectionStatus> statuses = plugin.getElectionStatuses();
+            for (Map.Entry<IElectionsHologram, List<String>> entry : targets.entrySet()) {
+                try {
+                    lines.put(entry.getKey(), this.lines(entry.getValue(), statuses));
+                } catch (Exception e) {
+                    plugin.getLogger().severe("HologramRenderer: " + entry.getKey().getName() + ": " + e);
+                }
+            }
+        } catch (Exception e) {
+            plugin.getLogger().severe("HologramRenderer: " + e);
+        }
+
+        Bukkit.getScheduler().runTask(plugin, () -> this.apply(lines));
+    }
+
+    private void apply(Map<IElectionsHologram, List<String>> lines) {
+        Collection<IElectionsHologram> holograms = plugin.holoList();
+
+        for (Map.Entry<IElectionsHologram, List<String>> entry : lines.entrySet()) {
+            IElectionsHologram hologram = entry.getKey();
+            if (!holograms.contains(hologram)) {
+                continue;
+            }
+
+            try {
+                edits.addAndGet(hologram.apply(entry.getValue()));
+                rendered.incrementAndGet();
+            } catch (Exception e) {
+                plugin.getLogger().severe("HologramRenderer: " + hologram.getName() + ": " + e);
+            }
+        }
+
+        this.finish();
+    }
+
+    /**
+     * Compute the text of a hologram, expanding %elections_status% to one line per election
+     * @param contents Lines configured for the hologram
+     * @param statuses Status of every election
+     * @return Lines to display
+     */
+    public List<String> lines(List<String> contents, Map<UUID, ElectionStatus> statuses) {
+        List<String> holoLines = new ArrayList<String>();
+
+        Cache<UUID, Party> parties = plugin.getCache().getParties();
+        for (String line : contents) {
+            if (!line.equals("%elections_status%")) {
+                holoLines.add(Messages.componentString(false, Messages.single("text", line), "hologram", "text"));
+                continue;
+            }
+
+            for (ElectionStatus status : statuses.values()) {
+                Election election = status.getElection();
+                Map<String, String> placeholders = Messages.multiple("name", election.getName(), "totalvotes", status.getTotalVotes().toString());
+                if (election.isOpen()) {
+                    placeholders.put("state", Messages.get("open"));
+                    holoLines.add(Messages.componentString(false, placeholders, "hologram-status", "open"));
+                    continue;
+                }
+
+                placeholders.put("state", Messages.get("closed"));
+
+                Map<UUID, Integer> winners = status.winners();
+                if (winners == null || winners.size() == 0) {
+                    holoLines.add(Messages.componentString(false, placeholders, "hologram-status", "closed-no-winner"));
+                    continue;
+                }
+
+                String s = "";
+                for (UUID partyId : winners.keySet()) {
+                    Party party = parties.get(partyId);
+                    if (party == null) {
+                        continue;
+                    }
+
+                    if (!s.equals("")) {
+                        s += ", ";
+                    }
+                    s += party.getName();
+                }
+                placeholders.put("winner", s);
+
+                if (winners.size() == 1) {
+                    holoLines.add(Messages.componentString(false, placeholders, "hologram-status", "closed-winner"));
+                    continue;
+                }
+
+                holoLines.add(Messages.componentString(false, placeholders, "hologram-status", "closed-tie"));
+            }
+        }
+
+        return holoLines;
+    }
+
+    /**
+     * Turn the lines on display into the wanted ones with as few edits as possible.
+     * Lines shared at the start and at the end are left alone, the ones in between are
+     * updated in place and the difference in length is inserted or removed.
+     * @param from Lines on display
+     * @param to Lines to display
+     * @param editor Hologram to edit
+     * @return Number of edits made
+     */
+    public static int diff(List<String> from, List<String> to, LineEditor editor) {
+        int n = from.size();
+        int m = to.size();
+
+        int prefix = 0;
+        while (prefix < n && prefix < m && from.get(prefix).equals(to.get(prefix))) {
+            prefix++;
+        }
+
+        int suffix = 0;
+        while (suffix < n - prefix && suffix < m - prefix && from.get(n - 1 - suffix).equals(to.get(m - 1 - suffix))) {
+            suffix++;
+        }
+
+        int oldLength = n - prefix - suffix;
+        int newLength = m - prefix - suffix;
+        int common = Math.min(oldLength, newLength);
+        int count = 0;
+
+        for (int i = prefix; i < prefix + common; i++) {
+            if (!from.get(i).equals(to.get(i))) {
+                editor.set(i, to.get(i));
+                count++;
+            }
+        }
+
+        int size = n;
+        for (int i = prefix + common; i < prefix + newLength; i++) {
+            if (i == size) {
+                editor.append(to.get(i));
+            } else {
+                editor.insert(i, to.get(i));
+            }
+            size++;
+            count++;
+        }
+
+        for (int i = common; i < oldLength; i++) {
+            editor.remove(prefix + common);
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Line operations of a hologram plugin
+     */
+    public interface LineEditor {
+        void set(int index, String text);
+        void insert(int index, String text);
+        void append(String text);
+        void remove(int index);
+    }
+}
@@ -1,11 +1,28 @@
 package me.lorenzo0111.elections;
 
+import java.util.List;
+
 import org.bukkit.Location;
 
 public interface IElectionsHologram {
     public String getName();
     public Location getLocation();
+    /**
+     * Ask for the hologram to be rendered in the next pass of the {@link HologramRenderer}
+     */
     public void refresh();
+
+    /**
+     * @return Copy of the configured lines, taken on the main thread
+     */
+    public List<String> getContents();
+
+    /**
+     * Show the lines on the main thread, editing only the ones that changed since the last call
+     * @param lines Lines computed by the {@link HologramRenderer}
+     * @return Number of line edits
+     */
+    public int apply(List<String> lines);
     public void clear();
     public void delete();
 }
\ No newline at end of file
@@ -42,8 +42,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
-import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 
 public class ClaimsChild extends SubCommand {
@@ -159,12 +157,7 @@ public class ClaimsChild extends SubCommand {
                 if (owner == null) {
                     placeholders.put("owner", "Admin");
                 } else {
-                    OfflinePlayer op = Bukkit.getOfflinePlayer(owner);
-                    if (op == null) {
-                        placeholders.put("owner", owner.toString());
-                    } else {
-                        placeholders.put("owner", op.getName());
-                    }
+                    placeholders.put("owner", plugin.getProfiles().name(owner, owner.toString()));
                 }
 
                 Messages.send(sender.audience(), true, placeholders, "claims", "list");
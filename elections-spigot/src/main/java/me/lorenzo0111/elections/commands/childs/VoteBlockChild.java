@@ -96,7 +96,7 @@ public class VoteBlockChild extends SubCommand {
 
         Cache <UUID, ElectionBlock> eblocks = plugin.getCache().getBlocks();
 
-        if (findElectionBlock(eblocks, world, location) != null) {
+        if (plugin.getVoteBlockListener().getBlock(block) != null) {
             Messages.send(sender.audience(), true, "errors", "block-already-exists");
             return;
         }
@@ -105,38 +105,24 @@ public class VoteBlockChild extends SubCommand {
         eblocks.add(eblock.getId(), eblock);
         eblocks.persist();
 
-        plugin.getVoteBlockListener().addBlock(block);
+        plugin.getVoteBlockListener().addBlock(eblock);
 
         Messages.send(sender.audience(), true, "vote-block", "created");
     }
 
-    private ElectionBlock findElectionBlock(Cache<UUID, ElectionBlock> eblocks, UUID world, Location location) {
-        for(ElectionBlock cblock : eblocks.map().values()) {
-            Location cloc = Location.deserialize(cblock.getLocation());
-
-            if (cblock.getWorld().equals(world) && cloc.equals(location)) {
-                return cblock;
-            }
-        }
-
-        return null;
-    }
-
     private void delete(User<?>sender, Block block) {
-        UUID world = block.getWorld().getUID();
-        Location location = block.getLocation();
-
         Cache <UUID, ElectionBlock> eblocks = plugin.getCache().getBlocks();
-        ElectionBlock eblock = findElectionBlock(eblocks, world, location);
+        ElectionBlock eblock = plugin.getVoteBlockListener().getBlock(block);
 
         if (eblock == null) {
             Messages.send(sender.audience(), true, "vote-block", "not-found");
+            return;
         }
 
         eblocks.remove(eblock.getId());
         eblocks.persist();
 
-        plugin.getVoteBlockListener().removeBlock(block);
+        plugin.getVoteBlockListener().removeBlock(eblock);
 
         Messages.send(sender.audience(), true, "vote-block", "deleted");
     }
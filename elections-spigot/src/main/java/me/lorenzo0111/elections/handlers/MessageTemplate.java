@@ -0,0 +1,118 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.lorenzo0111.elections.handlers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A message from messages.yml split once into literal text and named placeholder slots.
+ * Rendering fills the slots by substitution, which is what {@code Tag.preProcessParsed} placeholders do
+ * before MiniMessage parses the result.
+ */
+final class MessageTemplate {
+    private final String raw;
+    private final String[] literals;
+    private final String[] slots;
+    private final String[] tags;
+
+    private MessageTemplate(String raw, String[] literals, String[] slots, String[] tags) {
+        this.raw = raw;
+        this.literals = literals;
+        this.slots = slots;
+        this.tags = tags;
+    }
+
+    static MessageTemplate compile(String raw) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+
+        int start = 0;
+        int open = raw.indexOf('<');
+        while (open >= 0) {
+            int close = raw.indexOf('>', open + 1);
+            if (close < 0) {
+                break;
+            }
+
+            String name = raw.substring(open + 1, close);
+            if (slot(name) && (open == 0 || raw.charAt(open - 1) != '\\')) {
+                literals.add(raw.substring(start, open));
+                slots.add(name.toLowerCase(Locale.ROOT));
+                tags.add(raw.substring(open, close + 1));
+                start = close + 1;
+                open = raw.indexOf('<', start);
+                continue;
+            }
+
+            open = raw.indexOf('<', open + 1);
+        }
+        literals.add(raw.substring(start));
+
+        return new MessageTemplate(raw, literals.toArray(new String[0]), slots.toArray(new String[0]), tags.toArray(new String[0]));
+    }
+
+    private static boolean slot(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    String raw() {
+        return raw;
+    }
+
+    /**
+     * @param values Placeholder values, tags without a value are left for MiniMessage
+     * @return MiniMessage input with the placeholders filled in
+     */
+    String render(Map<String, String> values) {
+        if (slots.length == 0 || values.isEmpty()) {
+            return raw;
+        }
+
+        StringBuilder builder = new StringBuilder(raw.length() + 16 * slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            builder.append(literals[i]);
+
+            String value = values.get(slots[i]);
+            builder.append(value == null ? tags[i] : value);
+        }
+        builder.append(literals[slots.length]);
+
+        return builder.toString();
+    }
+}
@@ -29,9 +29,7 @@ import me.lorenzo0111.pluginslib.audience.BukkitAudienceManager;
 import net.kyori.adventure.audience.Audience;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
-import net.kyori.adventure.text.minimessage.tag.Tag;
 import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
-import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver.Builder;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -40,17 +38,30 @@ import org.spongepowered.configurate.ConfigurationNode;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Messages {
     private static ConfigurationNode config;
     private static String prefix;
     private static final String NOT_FOUND = ": <red>String not found in messages.yml";
+    private static final int CACHE_SIZE = 4096;
+    private static final Map<String, MessageTemplate> templates = new ConcurrentHashMap<>();
+    private static final Map<String, Component> components = new ConcurrentHashMap<>();
+    private static final Map<String, String> legacy = new ConcurrentHashMap<>();
+    private static final Map<String, String> serialized = new ConcurrentHashMap<>();
 
     public static void init(ConfigurationNode config, String prefix, JavaPlugin plugin) {
         Messages.config = config;
 
+        templates.clear();
+        components.clear();
+        legacy.clear();
+        serialized.clear();
+        compile(config, "");
+
         Component p = component(false, "prefix");
         Messages.prefix = MiniMessage.miniMessage().serialize(p);
     }
@@ -96,11 +107,19 @@ public class Messages {
     }
 
     public static String componentString(boolean prefix, Object... path) {
-        return Legacy.SERIALIZER.serialize(component(prefix, path));
+        String input = input(prefix, path);
+
+        String s = legacy.get(input);
+        if (s == null) {
+            s = Legacy.SERIALIZER.serialize(parse(input));
+            put(legacy, input, s);
+        }
+
+        return s;
     }
 
     public static String componentString(boolean prefix, Map<String, String> placeholders, Object... path) {
-        return Legacy.SERIALIZER.serialize(component(prefix, placeholders, path));
+        return componentString(prefix, new Object[] { placeholders, path });
     }
 
     private static String notfound(Object... path) {
@@ -120,10 +139,41 @@ public class Messages {
     }
 
     public static Component component(boolean prefix, Object... path) {
+        return parse(input(prefix, path));
+    }
+
+    private static Component parse(String input) {
+        Component c = components.get(input);
+        if (c == null) {
+            c = MiniMessage.miniMessage().deserialize(input);
+            put(components, input, c);
+        }
+
+        return c;
+    }
+
+    private static <T> void put(Map<String, T> cache, String input, T value) {
+        // inputs carry placeholder values, start over instead of growing forever
+        if (cache.size() >= CACHE_SIZE) {
+            cache.clear();
+        }
+        cache.put(input, value);
+    }
+
+    private static void placeholders(Map<String, String> into, Object o) {
+        Map<String, String> m = obj2strmap(o);
+        for (Map.Entry<String, String> e : m.entrySet()) {
+            into.put(e.getKey().toLowerCase(Locale.ROOT), e.getValue());
+        }
+    }
+
+    /**
+     * Build the MiniMessage input of a message: the template at the path with its placeholders filled in
+     */
+    private static String input(boolean prefix, Object... path) {
         String p = prefix ? prefix() : "";
 
-        Builder b = TagResolver.builder();
-        Boolean empty = true;
+        Map<String, String> placeholders = new HashMap<>();
         String pathDebug = "";
         ArrayList<String> newPath = new ArrayList<String>();
 
@@ -133,15 +183,9 @@ public class Messages {
                 pathDebug = pathDebug + (String)o + ".";
             } else if (o instanceof Map) {
                 try {
-                    Map<String, String> m = obj2strmap(o);
-                    Set<String> keys = m.keySet();
-                    for (String k : keys) {
-                        String v = m.get(k);
-                        b.tag(k, Tag.preProcessParsed(v));
-                        empty = false;
-                    }
+                    placeholders(placeholders, o);
                 } catch(Exception e) {
-                    return MiniMessage.miniMessage().deserialize(p + "A:" + pathDebug + ": " + e.toString());
+                    return p + "A:" + pathDebug + ": " + e.toString();
                 }
             } else if (o instanceof Object[]) {
                 Object oa[] = (Object[])o;
@@ -152,36 +196,59 @@ public class Messages {
                         pathDebug = pathDebug + (String)element + ".";
                     } else if (element instanceof Map) {
                         try {
-                            Map<String, String> m = obj2strmap(element);
-                            Set<String> keys = m.keySet();
-                            for (String k : keys) {
-                                String v = m.get(k);
-                                b.tag(k, Tag.preProcessParsed(v));
-                                empty = false;
-                            }
+                            placeholders(placeholders, element);
                         } catch(Exception e) {
-                            return MiniMessage.miniMessage().deserialize(p + "B:" + pathDebug + ": " + e.toString());
-                        }        
+                            return p + "B:" + pathDebug + ": " + e.toString();
+                        }
                     } else {
                         String t = element.getClass().getName();
                         String v = element.toString();
-                        return MiniMessage.miniMessage().deserialize(p + "C:" + t + ", " + v);
+                        return p + "C:" + t + ", " + v;
                     }
                 }
             } else {
-                return MiniMessage.miniMessage().deserialize(p + "D:" + notfound(o));
+                return p + "D:" + notfound(o);
             }
         }
 
-        ConfigurationNode n = config.node(newPath);
+        MessageTemplate template = template(newPath);
+        if (template == null) {
+            return p + (placeholders.isEmpty() ? "E:" : "F:") + pathDebug;
+        }
+
+        return p + template.render(placeholders);
+    }
+
+    private static MessageTemplate template(List<String> path) {
+        String key = String.join(".", path);
 
-        if (empty) {
-            return MiniMessage.miniMessage().deserialize(p + n.getString("E:" + pathDebug));
+        MessageTemplate template = templates.get(key);
+        if (template != null) {
+            return template;
         }
 
-        TagResolver placeholders = b.build();
+        String raw = config.node(path).getString();
+        if (raw == null) {
+            return null;
+        }
 
-        return MiniMessage.miniMessage().deserialize(p + n.getString("F:" + pathDebug), placeholders);
+        template = MessageTemplate.compile(raw);
+        templates.put(key, template);
+        return template;
+    }
+
+    private static void compile(ConfigurationNode node, String key) {
+        if (node.isMap()) {
+            for (Map.Entry<Object, ? extends ConfigurationNode> child : node.childrenMap().entrySet()) {
+                compile(child.getValue(), key.isEmpty() ? child.getKey().toString() : key + "." + child.getKey());
+            }
+            return;
+        }
+
+        String raw = node.getString();
+        if (raw != null) {
+            templates.put(key, MessageTemplate.compile(raw));
+        }
     }
 
     public static Component component(boolean prefix, TagResolver placeholders, Object... path) {
@@ -192,8 +259,15 @@ public class Messages {
     }
 
     public static String get(Object... path) {
-        Component c = component(false, path);
-        return MiniMessage.miniMessage().serialize(c);
+        String input = input(false, path);
+
+        String s = serialized.get(input);
+        if (s == null) {
+            s = MiniMessage.miniMessage().serialize(parse(input));
+            put(serialized, input, s);
+        }
+
+        return s;
     }
 
     public static void send(CommandSender sender, boolean prefix, Object... path) {
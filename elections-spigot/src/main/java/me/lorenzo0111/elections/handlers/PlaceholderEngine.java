@@ -0,0 +1,238 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.lorenzo0111.elections.handlers;
+
+import me.lorenzo0111.elections.api.objects.CacheIndex;
+import me.lorenzo0111.elections.api.objects.ICacheEntry;
+
+import org.bukkit.OfflinePlayer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Resolves placeholders through a trie of their names and caches the results.
+ * Global results are shared by every player, the others are kept by player.
+ * Every placeholder declares what it depends on and its results are dropped when that changes.
+ */
+public class PlaceholderEngine {
+    public static final int ELECTIONS = 1;
+    public static final int PARTIES = 1 << 1;
+    public static final int VOTES = 1 << 2;
+
+    private final Node root = new Node();
+    private final List<Placeholder> placeholders = new ArrayList<>();
+    // bumped by every invalidation, a result computed across one is not cached
+    private final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * Register a placeholder
+     * @param name Name of the placeholder, a name ending with '_' matches every placeholder that starts with it
+     * @param perPlayer true if the result depends on the player
+     * @param dependencies What the result depends on, a combination of {@link #ELECTIONS}, {@link #PARTIES} and {@link #VOTES}
+     * @param resolver Computes the result from the player and the rest of the placeholder after its name
+     * @return this engine
+     */
+    public PlaceholderEngine register(String name, boolean perPlayer, int dependencies, Resolver resolver) {
+        Node node = root;
+        for (int i = 0; i < name.length(); i++) {
+            node = node.children.computeIfAbsent(Character.toLowerCase(name.charAt(i)), c -> new Node());
+        }
+
+        Placeholder placeholder = new Placeholder(perPlayer, dependencies, resolver);
+        if (name.endsWith("_")) {
+            node.prefix = placeholder;
+        } else {
+            node.exact = placeholder;
+        }
+
+        placeholders.add(placeholder);
+        return this;
+    }
+
+    /**
+     * @param player Player the placeholder is resolved for, can be null for global placeholders
+     * @param params Placeholder without the identifier of the expansion
+     * @return The result, or null if the placeholder is unknown
+     */
+    public String request(OfflinePlayer player, String params) {
+        Node node = root;
+        Placeholder match = null;
+        int argument = 0;
+
+        for (int i = 0; i < params.length() && node != null; i++) {
+            node = node.children.get(Character.toLowerCase(params.charAt(i)));
+            if (node != null && node.prefix != null) {
+                match = node.prefix;
+                argument = i + 1;
+            }
+        }
+
+        if (node != null && node.exact != null) {
+            match = node.exact;
+            argument = params.length();
+        }
+
+        if (match == null) {
+            return null;
+        }
+
+        Map<String, String> results;
+        if (match.perPlayer) {
+            if (player == null) {
+                return null;
+            }
+
+            results = match.players.computeIfAbsent(player.getUniqueId(), id -> new ConcurrentHashMap<>());
+        } else {
+            results = match.global;
+        }
+
+        String result = results.get(params);
+        if (result != null) {
+            return result;
+        }
+
+        long start = epoch.get();
+        result = match.resolver.resolve(player, params.substring(argument));
+
+        if (result != null && epoch.get() == start) {
+            results.put(params, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Drop every result that depends on something that changed
+     * @param changed A combination of {@link #ELECTIONS}, {@link #PARTIES} and {@link #VOTES}
+     */
+    public void invalidate(int changed) {
+        epoch.incrementAndGet();
+
+        for (Placeholder placeholder : placeholders) {
+            if ((placeholder.dependencies & changed) != 0) {
+                placeholder.global.clear();
+                placeholder.players.clear();
+            }
+        }
+    }
+
+    /**
+     * Drop the results of a player and the global results that depend on something that changed
+     * @param changed A combination of {@link #ELECTIONS}, {@link #PARTIES} and {@link #VOTES}
+     * @param player Id of the only player whose results changed
+     */
+    public void invalidate(int changed, UUID player) {
+        epoch.incrementAndGet();
+
+        for (Placeholder placeholder : placeholders) {
+            if ((placeholder.dependencies & changed) != 0) {
+                placeholder.global.clear();
+                placeholder.players.remove(player);
+            }
+        }
+    }
+
+    /**
+     * Drop every result kept for a player
+     * @param player Id of the player
+     */
+    public void forget(UUID player) {
+        for (Placeholder placeholder : placeholders) {
+            placeholder.players.remove(player);
+        }
+    }
+
+    /**
+     * @param changed What the entries of the cache are, one of {@link #ELECTIONS}, {@link #PARTIES} and {@link #VOTES}
+     * @param player Player an entry belongs to, or null if its changes can affect every player
+     * @return A cache index that invalidates the results when the cache changes
+     */
+    public <K, V extends ICacheEntry> CacheIndex<K, V> index(int changed, Function<V, UUID> player) {
+        return new CacheIndex<K, V>() {
+            @Override
+            public void add(K key, V value) {
+                this.changed(key, value);
+            }
+
+            @Override
+            public void remove(K key, V value) {
+                this.changed(key, value);
+            }
+
+            @Override
+            public void changed(K key, V value) {
+                UUID playerId = player == null ? null : player.apply(value);
+                if (playerId == null) {
+                    invalidate(changed);
+                } else {
+                    invalidate(changed, playerId);
+                }
+            }
+
+            @Override
+            public void clear() {
+                invalidate(changed);
+            }
+        };
+    }
+
+    public interface Resolver {
+        /**
+         * @param player Player the placeholder is resolved for
+         * @param argument Rest of the placeholder after its name
+         * @return The result, or null if the placeholder is invalid
+         */
+        String resolve(OfflinePlayer player, String argument);
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private Placeholder exact;
+        private Placeholder prefix;
+    }
+
+    private static class Placeholder {
+        private final boolean perPlayer;
+        private final int dependencies;
+        private final Resolver resolver;
+        private final Map<String, String> global = new ConcurrentHashMap<>();
+        private final Map<UUID, Map<String, String>> players = new ConcurrentHashMap<>();
+
+        private Placeholder(boolean perPlayer, int dependencies, Resolver resolver) {
+            this.perPlayer = perPlayer;
+            this.dependencies = dependencies;
+            this.resolver = resolver;
+        }
+    }
+}
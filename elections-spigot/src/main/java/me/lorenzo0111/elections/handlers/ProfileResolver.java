@@ -0,0 +1,256 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111, tadhunt
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.handlers;
+
+import me.lorenzo0111.elections.ElectionsPlus;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded cache of player profiles resolved off the main thread.
+ * {@link Bukkit#getOfflinePlayer(UUID)} can hit the disk or Mojang for players that did not join recently,
+ * so lookups never wait for it: a missing profile is resolved asynchronously and the caller gets a placeholder meanwhile.
+ * The lookups are queued and resolved one after the other by a single async task.
+ */
+public class ProfileResolver {
+    private final ElectionsPlus plugin;
+    private final Map<UUID, Profile> profiles;
+    private final Map<UUID, CompletableFuture<Profile>> inflight = new ConcurrentHashMap<>();
+    private final Queue<UUID> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final int capacity;
+
+    public ProfileResolver(ElectionsPlus plugin, int capacity) {
+        this.plugin = plugin;
+        this.capacity = Math.max(1, capacity);
+        this.profiles = Collections.synchronizedMap(new LinkedHashMap<UUID, Profile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Profile> eldest) {
+                return size() > ProfileResolver.this.capacity;
+            }
+        });
+    }
+
+    /**
+     * @param uuid Player to look up
+     * @return The cached profile, or a pending placeholder while it is resolved in the background
+     */
+    public Profile profile(UUID uuid) {
+        Profile profile = profiles.get(uuid);
+        if (profile != null) {
+            if (!profile.isResolved()) {
+                // left the server: keep the name, the player is looked up again
+                this.resolve(uuid);
+            }
+            return profile;
+        }
+
+        if (Bukkit.isPrimaryThread()) {
+            Player online = Bukkit.getPlayer(uuid);
+            if (online != null) {
+                this.seen(online);
+                return profiles.get(uuid);
+            }
+        }
+
+        this.resolve(uuid);
+        return new Profile(uuid, null, null, false);
+    }
+
+    /**
+     * @param uuid Player to look up
+     * @param placeholder Returned while the profile is pending or when the player never joined
+     * @return Name of the player
+     */
+    public String name(UUID uuid, String placeholder) {
+        String name = this.profile(uuid).getName();
+        return name == null ? placeholder : name;
+    }
+
+    /**
+     * @param uuid Player to look up
+     * @return The cached player, or null while it is resolved in the background
+     */
+    public OfflinePlayer player(UUID uuid) {
+        return this.profile(uuid).getPlayer();
+    }
+
+    /**
+     * Resolve a profile in the background, reusing a lookup already running for the same player
+     * @param uuid Player to look up
+     */
+    public CompletableFuture<Profile> resolve(UUID uuid) {
+        CompletableFuture<Profile> future = inflight.get(uuid);
+        if (future != null) {
+            return future;
+        }
+
+        CompletableFuture<Profile> created = new CompletableFuture<>();
+        future = inflight.putIfAbsent(uuid, created);
+        if (future != null) {
+            return future;
+        }
+
+        queue.add(uuid);
+        this.schedule();
+
+        return created;
+    }
+
+    private void schedule() {
+        if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            UUID uuid;
+            while ((uuid = queue.poll()) != null) {
+                CompletableFuture<Profile> future = inflight.get(uuid);
+                if (future == null) {
+                    continue;
+                }
+
+                try {
+                    OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
+                    Profile profile = new Profile(uuid, player.getName(), player, true);
+                    profiles.put(uuid, profile);
+                    future.complete(profile);
+                } catch (Exception e) {
+                    plugin.getLogger().warning("ProfileResolver: " + uuid + ": " + e);
+                    future.completeExceptionally(e);
+                } finally {
+                    inflight.remove(uuid, future);
+                }
+            }
+        } finally {
+            draining.set(false);
+            // a lookup queued while the task was finishing
+            this.schedule();
+        }
+    }
+
+    /**
+     * Resolve the profiles that are not cached yet, without waiting for them.
+     * Only the first players that fit in the cache are looked up, the others would evict them anyway.
+     * @param uuids Players to look up
+     */
+    public void warm(Collection<UUID> uuids) {
+        int queued = 0;
+        for (UUID uuid : uuids) {
+            if (queued >= capacity) {
+                break;
+            }
+
+            if (uuid != null && !profiles.containsKey(uuid)) {
+                this.resolve(uuid);
+                queued++;
+            }
+        }
+    }
+
+    /**
+     * Resolve every cached profile again, to pick up name changes
+     */
+    public void refresh() {
+        List<UUID> uuids;
+        synchronized (profiles) {
+            uuids = new ArrayList<>(profiles.keySet());
+        }
+
+        for (UUID uuid : uuids) {
+            this.resolve(uuid);
+        }
+    }
+
+    /**
+     * Store the profile of an online player, which is known without any lookup
+     */
+    public void seen(Player player) {
+        profiles.put(player.getUniqueId(), new Profile(player.getUniqueId(), player.getName(), player, true));
+    }
+
+    /**
+     * Keep only the name of a player that quits, so the cache doesn't hold on to the player entity
+     */
+    public void quit(Player player) {
+        profiles.put(player.getUniqueId(), new Profile(player.getUniqueId(), player.getName(), null, false));
+    }
+
+    public int size() {
+        return profiles.size();
+    }
+
+    public static class Profile {
+        private final UUID uuid;
+        private final String name;
+        private final OfflinePlayer player;
+        private final boolean resolved;
+
+        private Profile(UUID uuid, String name, OfflinePlayer player, boolean resolved) {
+            this.uuid = uuid;
+            this.name = name;
+            this.player = player;
+            this.resolved = resolved;
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        /**
+         * @return Name of the player, null while pending or when the player never joined
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The player, null while pending
+         */
+        public OfflinePlayer getPlayer() {
+            return player;
+        }
+
+        public boolean isResolved() {
+            return resolved;
+        }
+    }
+}
@@ -35,11 +35,13 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 public class JoinListener implements Listener {
     @EventHandler(priority = EventPriority.MONITOR)
     public void onJoin(PlayerJoinEvent event) {
         ElectionsPlus plugin = ElectionsPlus.getInstance();
+        plugin.getProfiles().seen(event.getPlayer());
 
         if (event.getPlayer().hasPermission("elections.update") && plugin.getConfig().getBoolean("update.check")) {
             ElectionsPlus.getInstance()
@@ -66,4 +68,9 @@ public class JoinListener implements Listener {
         }
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        ElectionsPlus.getInstance().getProfiles().quit(event.getPlayer());
+    }
+
 }
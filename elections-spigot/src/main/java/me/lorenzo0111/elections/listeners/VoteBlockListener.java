@@ -4,54 +4,114 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.inventory.EquipmentSlot;
 
 import me.lorenzo0111.elections.ElectionsPlus;
 import me.lorenzo0111.elections.api.objects.Cache;
 import me.lorenzo0111.elections.api.objects.Election;
 import me.lorenzo0111.elections.api.objects.ElectionBlock;
+import me.lorenzo0111.elections.cache.BlockIndex;
 import me.lorenzo0111.elections.menus.ElectionsMenu;
 
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 import java.util.UUID;
 
-import org.bukkit.Bukkit;
-import org.bukkit.Location;
-import org.bukkit.World;
+import org.bukkit.Chunk;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 
+/**
+ * Opens the elections menu from the vote blocks.
+ * A vote block is checked against its stored block data when its chunk loads, or the first time it is used
+ * if its chunk was already loaded, and the result is kept until the chunk unloads.
+ */
 public class VoteBlockListener implements Listener {
     private ElectionsPlus plugin;
-    private List<Block> blocks;
+    private final BlockIndex<ElectionBlock> blocks = new BlockIndex<>();
+    private final Set<ElectionBlock> valid = Collections.newSetFromMap(new IdentityHashMap<>());
 
     public VoteBlockListener(ElectionsPlus plugin) {
         this.plugin = plugin;
-        this.blocks = new ArrayList<>();
 
         Cache<UUID, ElectionBlock> cacheBlocks = plugin.getCache().getBlocks();
 
-        World world = Bukkit.getWorld("world");
         for (ElectionBlock electionBlock : cacheBlocks.map().values()) {
-            Location location = Location.deserialize(electionBlock.getLocation());
-            Block block = world.getBlockAt(location);
-            String blockData = block.getBlockData().getAsString();
-
-            if (electionBlock.getBlockData().equals(blockData)) {
-                blocks.add(block);
-            }
+            this.addBlock(electionBlock);
         }
 
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
     }
 
-    public void addBlock(Block block) {
-        this.blocks.add(block);
+    public void addBlock(ElectionBlock block) {
+        ElectionBlock previous = this.blocks.put(block.getWorld(), block.getX(), block.getY(), block.getZ(), block);
+        if (previous != null) {
+            this.valid.remove(previous);
+        }
+    }
+
+    public void removeBlock(ElectionBlock block) {
+        ElectionBlock previous = this.blocks.remove(block.getWorld(), block.getX(), block.getY(), block.getZ());
+        if (previous != null) {
+            this.valid.remove(previous);
+        }
+    }
+
+    /**
+     * @return The vote block registered at this block, whether or not it still matches its block data
+     */
+    public ElectionBlock getBlock(Block block) {
+        return this.blocks.get(block.getWorld().getUID(), block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * @return The vote block at this block, or null if it isn't one
+     */
+    public ElectionBlock find(Block block) {
+        ElectionBlock electionBlock = this.getBlock(block);
+        if (electionBlock == null || valid.contains(electionBlock)) {
+            return electionBlock;
+        }
+
+        // its chunk was loaded before the block was registered
+        return this.validate(electionBlock, block) ? electionBlock : null;
+    }
+
+    private boolean validate(ElectionBlock electionBlock, Block block) {
+        if (electionBlock.getBlockData().equals(block.getBlockData().getAsString())) {
+            valid.add(electionBlock);
+            return true;
+        }
+
+        this.removeBlock(electionBlock);
+
+        Cache<UUID, ElectionBlock> cacheBlocks = plugin.getCache().getBlocks();
+        if (cacheBlocks.remove(electionBlock.getId(), electionBlock)) {
+            cacheBlocks.persist();
+        }
+
+        plugin.getLogger().info(String.format("Removed electionblock at location %s (blockdata changed)", electionBlock.getLocation().toString()));
+        return false;
     }
 
-    public void removeBlock(Block block) {
-        this.blocks.remove(block);
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+
+        for (ElectionBlock electionBlock : new ArrayList<>(blocks.inChunk(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ()))) {
+            this.validate(electionBlock, chunk.getBlock(electionBlock.getX() & 15, electionBlock.getY(), electionBlock.getZ() & 15));
+        }
+    }
+
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+
+        valid.removeAll(blocks.inChunk(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ()));
     }
 
     @EventHandler
@@ -61,11 +121,11 @@ public class VoteBlockListener implements Listener {
         //Action action = event.getAction();
         Block clickedBlock = event.getClickedBlock();
 
-        if(hand != EquipmentSlot.HAND) {
+        if(hand != EquipmentSlot.HAND || clickedBlock == null) {
             return;
         }
 
-        if (!this.blocks.contains(clickedBlock)) {
+        if (this.find(clickedBlock) == null) {
             return;
         }
 
@@ -77,7 +137,7 @@ public class VoteBlockListener implements Listener {
     public void onBlockBreak(BlockBreakEvent e) {
         Block brokenBlock = e.getBlock();
 
-        if (this.blocks.contains(brokenBlock)) {
+        if (this.find(brokenBlock) != null) {
             e.setCancelled(true);
         }
     }
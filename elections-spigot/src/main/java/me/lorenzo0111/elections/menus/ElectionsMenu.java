@@ -57,17 +57,20 @@ public class ElectionsMenu extends PaginatedGui {
 
     public void setup() {
         Bukkit.getScheduler().runTask(plugin, () -> {
+            MenuItems items = plugin.getMenuItems();
+
             this.setDefaultClickAction(e -> e.setCancelled(true));
-            this.setItem(3, 3, ItemBuilder.from(Material.ARROW).name(Messages.component(false, "guis", "back")).asGuiItem(e -> this.previous()));
-            this.setItem(3, 7, ItemBuilder.from(Material.ARROW).name(Messages.component(false, "guis", "next")).asGuiItem(e -> this.next()));
-            this.getFiller().fillBorder(ItemBuilder.from(Objects.requireNonNull(XMaterial.BLACK_STAINED_GLASS_PANE.parseItem())).asGuiItem());
+            this.setItem(3, 3, items.item("back", () -> ItemBuilder.from(Material.ARROW).name(Messages.component(false, "guis", "back")).build(), e -> this.previous()));
+            this.setItem(3, 7, items.item("next", () -> ItemBuilder.from(Material.ARROW).name(Messages.component(false, "guis", "next")).build(), e -> this.next()));
+            this.getFiller().fillBorder(items.item("border", () -> ItemBuilder.from(Objects.requireNonNull(XMaterial.BLACK_STAINED_GLASS_PANE.parseItem())).build(), null));
 
+            String variant = owner.hasPermission("elections.edit") ? "edit" : "view";
             for (Election election : elections.map().values()) {
-                this.addItem(ItemBuilder
+                this.addItem(items.item(election.getId(), election.version(), variant, () -> ItemBuilder
                         .from(Objects.requireNonNull(XMaterial.YELLOW_BANNER.parseItem()))
                         .name(Component.text("§9" + election.getName()))
                         .lore(Messages.component(false, Messages.single("state", election.isOpen() ? Messages.get("open") : Messages.get("closed")), "guis", "state"), election.isOpen() ? Messages.component(false, "guis", "vote") : Component.empty(), getRightLore(election))
-                        .asGuiItem(e -> {
+                        .build(), e -> {
                             if (e.getWhoClicked().hasPermission("elections.edit") && e.getClick().equals(ClickType.RIGHT)) {
                                 this.close(e.getWhoClicked());
 
@@ -34,8 +34,8 @@ import me.lorenzo0111.elections.api.objects.Party;
 import me.lorenzo0111.elections.conversation.ConversationUtil;
 import me.lorenzo0111.elections.conversation.conversations.AddMemberConversation;
 import me.lorenzo0111.elections.handlers.Messages;
+import me.lorenzo0111.elections.handlers.ProfileResolver;
 import net.kyori.adventure.text.Component;
-import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
@@ -50,7 +50,7 @@ public class MembersMenu extends PaginatedGui {
     private final Party party;
     private final Player owner;
     private final ElectionsPlus plugin;
-    private final List<OfflinePlayer> added = new ArrayList<>();
+    private final List<UUID> added = new ArrayList<>();
 
     public MembersMenu(ElectionsPlus plugin, Party party, Player owner) {
         super(3, 0, Messages.componentString(false, Messages.single("name", party.getName()), "guis", "members-title"), new HashSet<InteractionModifier>());
@@ -71,27 +71,32 @@ public class MembersMenu extends PaginatedGui {
         this.getFiller().fillBottom(ItemBuilder.from(Objects.requireNonNull(XMaterial.BLACK_STAINED_GLASS_PANE.parseItem())).asGuiItem());
 
         for (UUID uuid : party.getMembers()) {
-            OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
-            if (player.getName() == null)
+            ProfileResolver.Profile profile = plugin.getProfiles().profile(uuid);
+            if (profile.isResolved() && profile.getName() == null)
                 continue;
-            if (added.contains(player))
+            if (added.contains(uuid))
                 continue;
-            added.add(player);
+            added.add(uuid);
 
+            // members still being resolved are shown by uuid
+            String name = profile.getName() == null ? uuid.toString() : profile.getName();
             SkullBuilder item = ItemBuilder.skull()
-                    .name(Component.text("§9" + player.getName()))
-                    .lore(Messages.component(false, "guis", "kick-member"), Messages.component(false, "guis", "set-owner"))
-                    .owner(player);
+                    .name(Component.text("§9" + name))
+                    .lore(Messages.component(false, "guis", "kick-member"), Messages.component(false, "guis", "set-owner"));
+
+            OfflinePlayer player = profile.getPlayer();
+            if (player != null)
+                item.owner(player);
 
             this.addItem(item.asGuiItem(e -> {
                 switch (e.getClick()) {
                     case LEFT:
-                        party.removeMember(player.getUniqueId());
+                        party.removeMember(uuid);
                         this.close(e.getWhoClicked());
                         break;
                     case RIGHT:
                         this.close(e.getWhoClicked());
-                        party.setOwner(player.getUniqueId());
+                        party.setOwner(uuid);
                         break;
                     default:
                         break;
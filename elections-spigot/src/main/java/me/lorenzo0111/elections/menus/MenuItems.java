@@ -0,0 +1,117 @@
+/*
+ * This file is part of ElectionsPlus, licensed under the MIT License.
+ *
+ * Copyright (c) Lorenzo0111
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.lorenzo0111.elections.menus;
+
+import dev.triumphteam.gui.components.GuiAction;
+import dev.triumphteam.gui.guis.GuiItem;
+import me.lorenzo0111.elections.database.Version;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Item templates shared by every opening of the menus.
+ * A template is built once and rebuilt when the {@link Version} of its entity changes,
+ * each opening only clones it and attaches its own click action.
+ */
+public class MenuItems {
+    private static final int CACHE_SIZE = 4096;
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+
+    /**
+     * Item that only depends on messages.yml
+     * @param key Name of the item
+     * @param builder Builds the item on a miss
+     * @param action Click action of this opening, or null
+     */
+    public GuiItem item(String key, Supplier<ItemStack> builder, GuiAction<InventoryClickEvent> action) {
+        Template template = templates.get(key);
+        if (template == null) {
+            template = new Template(null, 0, builder.get());
+            this.put(key, template);
+        }
+
+        return template.item(action);
+    }
+
+    /**
+     * Item that shows an entity
+     * @param id Id of the entity
+     * @param version Version of the entity, the item is rebuilt when it changes
+     * @param variant Anything else the item depends on, like the permissions of the viewer
+     * @param builder Builds the item on a miss
+     * @param action Click action of this opening, or null
+     */
+    public GuiItem item(UUID id, Version version, String variant, Supplier<ItemStack> builder, GuiAction<InventoryClickEvent> action) {
+        String key = id + ":" + variant;
+
+        Template template = templates.get(key);
+        if (template == null || template.version != version || template.counter != version.getVersion()) {
+            template = new Template(version, version.getVersion(), builder.get());
+            this.put(key, template);
+        }
+
+        return template.item(action);
+    }
+
+    private void put(String key, Template template) {
+        // variants can depend on the viewer, start over instead of growing forever
+        if (templates.size() >= CACHE_SIZE) {
+            templates.clear();
+        }
+        templates.put(key, template);
+    }
+
+    /**
+     * Drop every template, after messages.yml is reloaded
+     */
+    public void clear() {
+        templates.clear();
+    }
+
+    private static class Template {
+        private final Version version;
+        private final int counter;
+        private final ItemStack stack;
+
+        private Template(Version version, int counter, ItemStack stack) {
+            this.version = version;
+            this.counter = counter;
+            this.stack = stack;
+        }
+
+        private GuiItem item(GuiAction<InventoryClickEvent> action) {
+            if (action == null) {
+                return new GuiItem(stack.clone());
+            }
+
+            return new GuiItem(stack.clone(), action);
+        }
+    }
+}
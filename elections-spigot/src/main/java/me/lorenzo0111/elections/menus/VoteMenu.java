@@ -58,10 +58,12 @@ public class VoteMenu extends PaginatedGui {
     }
 
     public void setup() {
+        MenuItems items = plugin.getMenuItems();
+
         this.setDefaultClickAction(e -> e.setCancelled(true));
-        this.getFiller().fillBorder(ItemBuilder.from(Objects.requireNonNull(XMaterial.BLACK_STAINED_GLASS_PANE.parseItem())).asGuiItem());
-        this.setItem(3, 3, ItemBuilder.from(Material.ARROW).name(Messages.component(false, "guis", "back")).asGuiItem(e -> this.previous()));
-        this.setItem(3, 7, ItemBuilder.from(Material.ARROW).name(Messages.component(false, "guis", "next")).asGuiItem(e -> this.next()));
+        this.getFiller().fillBorder(items.item("border", () -> ItemBuilder.from(Objects.requireNonNull(XMaterial.BLACK_STAINED_GLASS_PANE.parseItem())).build(), null));
+        this.setItem(3, 3, items.item("back", () -> ItemBuilder.from(Material.ARROW).name(Messages.component(false, "guis", "back")).build(), e -> this.previous()));
+        this.setItem(3, 7, items.item("next", () -> ItemBuilder.from(Material.ARROW).name(Messages.component(false, "guis", "next")).build(), e -> this.next()));
 
         Cache<UUID, Party> parties = plugin.getCache().getParties();
         Cache<UUID, Vote> votes = plugin.getCache().getVotes();
@@ -71,31 +73,36 @@ public class VoteMenu extends PaginatedGui {
                 continue;
             }
 
-            OfflinePlayer partyOwner = plugin.getPartyOwner(party, this.owner);
+            // parties without an owner, or whose owner is still being resolved, show the head of the viewer
+            boolean resolved = !party.getOwner().equals(new UUID(0, 0)) && plugin.getProfiles().player(party.getOwner()) != null;
+            String variant = resolved ? "owner" : this.owner.getUniqueId().toString();
+
+            this.addItem(items.item(party.getId(), party.version(), variant, () -> {
+                OfflinePlayer partyOwner = plugin.getPartyOwner(party, this.owner);
 
-            this.addItem(ItemBuilder.skull()
-                    .name(Component.text("§9" + party.getName()))
-                    .lore(Messages.component(false, "guis", "vote"))
-                    .texture(party.getIcon())
-                    .owner(partyOwner)
-                    .asGuiItem(e -> {
-                        this.close(e.getWhoClicked());
+                return ItemBuilder.skull()
+                        .name(Component.text("§9" + party.getName()))
+                        .lore(Messages.component(false, "guis", "vote"))
+                        .texture(party.getIcon())
+                        .owner(partyOwner)
+                        .build();
+            }, e -> {
+                this.close(e.getWhoClicked());
 
-                        UUID player = e.getWhoClicked().getUniqueId();
+                UUID player = e.getWhoClicked().getUniqueId();
 
-                        Vote vote = plugin.findVote(votes, election, player);
-                        if (vote != null) {
-                            Messages.send(e.getWhoClicked(), true, Messages.single("election", election.getName()), "vote", "already");
-                            return;
-                        }
+                if (plugin.hasVoted(election, player)) {
+                    Messages.send(e.getWhoClicked(), true, Messages.single("election", election.getName()), "vote", "already");
+                    return;
+                }
 
-                        vote = new Vote(UUID.randomUUID(), player, party.getId(), election.getId(), true);
-                        votes.add(vote.getId(), vote);
-                        votes.persist();
+                Vote vote = new Vote(UUID.randomUUID(), player, party.getId(), election.getId(), true);
+                votes.add(vote.getId(), vote);
+                votes.persist();
 
-                        Messages.send(e.getWhoClicked(), true, Messages.multiple("party", party.getName(), "election", election.getName()), "vote", "success");
-                        plugin.holoRefresh();
-                    }));
+                Messages.send(e.getWhoClicked(), true, Messages.multiple("party", party.getName(), "election", election.getName()), "vote", "success");
+                plugin.holoRefresh();
+            }));
         }
 
         this.open(owner);